@@ -7,9 +7,14 @@ public abstract class Expr {
     public interface Visitor<R> {
         R visitAssignExpr(Assign expr);
         R visitBinaryExpr(Binary expr);
+        R visitCallExpr(Call expr);
+        R visitGetExpr(Get expr);
         R visitGroupingExpr(Grouping expr);
         R visitLiteralExpr(Literal expr);
         R visitLogicalExpr(Logical expr);
+        R visitSetExpr(Set expr);
+        R visitSuperExpr(Super expr);
+        R visitThisExpr(This expr);
         R visitUnaryExpr(Unary expr);
         R visitVariableExpr(Variable expr);
     }
@@ -26,6 +31,8 @@ public abstract class Expr {
 
         public final Token name;
         public final Expr value;
+        public int depth = -1;
+        public int slot = -1;
     }
     public  static class Binary extends Expr {
         public Binary(Expr left, Token operator, Expr right) {
@@ -42,6 +49,39 @@ public abstract class Expr {
         public final Expr left;
         public final Token operator;
         public final Expr right;
+        public int specialization = 0;
+    }
+    public  static class Call extends Expr {
+        public Call(Expr callee, Token paren, List<Expr> arguments) {
+            this.callee = callee;
+            this.paren = paren;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+             return visitor.visitCallExpr(this);
+        }
+
+        public final Expr callee;
+        public final Token paren;
+        public final List<Expr> arguments;
+        public Stmt.Function checked = null;
+    }
+    public  static class Get extends Expr {
+        public Get(Expr object, Token name) {
+            this.object = object;
+            this.name = name;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+             return visitor.visitGetExpr(this);
+        }
+
+        public final Expr object;
+        public final Token name;
+        public Object cache = null;
     }
     public  static class Grouping extends Expr {
         public Grouping(Expr expression) {
@@ -83,6 +123,53 @@ public abstract class Expr {
         public final Token operator;
         public final Expr right;
     }
+    public  static class Set extends Expr {
+        public Set(Expr object, Token name, Expr value) {
+            this.object = object;
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+             return visitor.visitSetExpr(this);
+        }
+
+        public final Expr object;
+        public final Token name;
+        public final Expr value;
+        public Object cache = null;
+    }
+    public  static class Super extends Expr {
+        public Super(Token keyword, Token method) {
+            this.keyword = keyword;
+            this.method = method;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+             return visitor.visitSuperExpr(this);
+        }
+
+        public final Token keyword;
+        public final Token method;
+        public int depth = -1;
+        public int slot = -1;
+    }
+    public  static class This extends Expr {
+        public This(Token keyword) {
+            this.keyword = keyword;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+             return visitor.visitThisExpr(this);
+        }
+
+        public final Token keyword;
+        public int depth = -1;
+        public int slot = -1;
+    }
     public  static class Unary extends Expr {
         public Unary(Token operator, Expr right) {
             this.operator = operator;
@@ -96,6 +183,7 @@ public abstract class Expr {
 
         public final Token operator;
         public final Expr right;
+        public int specialization = 0;
     }
     public  static class Variable extends Expr {
         public Variable(Token name) {
@@ -108,6 +196,8 @@ public abstract class Expr {
         }
 
         public final Token name;
+        public int depth = -1;
+        public int slot = -1;
     }
 
     public  abstract <R> R accept(Visitor<R> visitor);
@@ -6,9 +6,14 @@ import scanner.Token;
 public abstract class Stmt {
     public interface Visitor<R> {
         R visitBlockStmt(Block stmt);
+        R visitBreakStmt(Break stmt);
+        R visitClassStmt(Class stmt);
         R visitExpressionStmt(Expression stmt);
+        R visitFunctionStmt(Function stmt);
         R visitIfStmt(If stmt);
+        R visitLazyStmt(Lazy stmt);
         R visitPrintStmt(Print stmt);
+        R visitReturnStmt(Return stmt);
         R visitVarStmt(Var stmt);
         R visitWhileStmt(While stmt);
     }
@@ -23,6 +28,38 @@ public abstract class Stmt {
         }
 
         public final List<Stmt> statements;
+        public int slots = 0;
+        public int countedLoop = 0;
+        public boolean captured = false;
+    }
+    public  static class Break extends Stmt {
+        public Break(Token keyword) {
+            this.keyword = keyword;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+             return visitor.visitBreakStmt(this);
+        }
+
+        public final Token keyword;
+    }
+    public  static class Class extends Stmt {
+        public Class(Token name, Expr.Variable superclass, List<Stmt.Function> methods) {
+            this.name = name;
+            this.superclass = superclass;
+            this.methods = methods;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+             return visitor.visitClassStmt(this);
+        }
+
+        public final Token name;
+        public final Expr.Variable superclass;
+        public final List<Stmt.Function> methods;
+        public int slot = -1;
     }
     public  static class Expression extends Stmt {
         public Expression(Expr expression) {
@@ -36,6 +73,25 @@ public abstract class Stmt {
 
         public final Expr expression;
     }
+    public  static class Function extends Stmt {
+        public Function(Token name, List<Token> params, List<Stmt> body) {
+            this.name = name;
+            this.params = params;
+            this.body = body;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+             return visitor.visitFunctionStmt(this);
+        }
+
+        public final Token name;
+        public final List<Token> params;
+        public final List<Stmt> body;
+        public int slot = -1;
+        public int slots = 0;
+        public boolean captured = false;
+    }
     public  static class If extends Stmt {
         public If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
             this.condition = condition;
@@ -52,6 +108,19 @@ public abstract class Stmt {
         public final Stmt thenBranch;
         public final Stmt elseBranch;
     }
+    public  static class Lazy extends Stmt {
+        public Lazy(List<Token> body) {
+            this.body = body;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+             return visitor.visitLazyStmt(this);
+        }
+
+        public final List<Token> body;
+        public Block block = null;
+    }
     public  static class Print extends Stmt {
         public Print(Expr expression) {
             this.expression = expression;
@@ -64,6 +133,20 @@ public abstract class Stmt {
 
         public final Expr expression;
     }
+    public  static class Return extends Stmt {
+        public Return(Token keyword, Expr value) {
+            this.keyword = keyword;
+            this.value = value;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+             return visitor.visitReturnStmt(this);
+        }
+
+        public final Token keyword;
+        public final Expr value;
+    }
     public  static class Var extends Stmt {
         public Var(Token name, Expr initializer) {
             this.name = name;
@@ -77,6 +160,7 @@ public abstract class Stmt {
 
         public final Token name;
         public final Expr initializer;
+        public int slot = -1;
     }
     public  static class While extends Stmt {
         public While(Expr condition, Stmt body) {
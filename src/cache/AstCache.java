@@ -0,0 +1,88 @@
+package cache;
+
+import ast.Stmt;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/*
+* The ast cache keeps the parsed statements of the scripts in a directory, in a binary file named after a hash of
+* the source code. A script that didn't change is run from its cached ast, without scanning nor parsing it.
+*
+* The key also covers the charset the source is decoded with and the way it's parsed, since both change the ast.
+* A cached file that can't be read is ignored, and the script is parsed again.
+* */
+public class AstCache {
+    private final Path directory;
+
+    public AstCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public static String key(ByteBuffer source, Charset charset, String mode) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(("%d %s %s%n".formatted(AstFormat.VERSION, charset.name(), mode))
+                    .getBytes(StandardCharsets.UTF_8));
+            digest.update(source.duplicate());
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    // the cached statements of the source with this key, or null when there are none.
+    public List<Stmt> load(String key) {
+        Path file = directory.resolve(key + ".ast");
+        if (!Files.isRegularFile(file)) return null;
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != AstFormat.MAGIC || in.getInt() != AstFormat.VERSION) return null;
+            return new AstReader(in).read();
+        } catch (IOException | BufferUnderflowException | IllegalStateException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /*
+    * The statements are written to a temporary file that is then moved in place, so another run never reads a
+    * file that is half written. The cache is only an optimization: when it can't be written, nothing happens.
+    * */
+    public void store(String key, List<Stmt> statements) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            try (OutputStream file = Files.newOutputStream(temporary);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+                out.writeInt(AstFormat.MAGIC);
+                out.writeInt(AstFormat.VERSION);
+                new AstWriter(out).write(statements);
+            }
+            Files.move(temporary, directory.resolve(key + ".ast"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the script runs without the cache.
+            try {
+                if (temporary != null) Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // there is nothing more to do.
+            }
+        }
+    }
+}
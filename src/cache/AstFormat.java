@@ -0,0 +1,51 @@
+package cache;
+
+/*
+* the tags of the binary format of the ast cache. A cached file starts with MAGIC and VERSION, then the number of
+* top level statements and the statements. A node is its tag followed by its fields, a missing node is NULL.
+* A token is its type ordinal, its lexeme, its literal and its line, a string is its length and its UTF-8 bytes.
+*
+* VERSION must change whenever the ast or this format changes, so old cached files are not read anymore.
+* */
+final class AstFormat {
+    static final int MAGIC = 0x4C4F5841;    // "LOXA"
+    static final int VERSION = 4;
+
+    static final int NULL = 0;
+
+    // statements.
+    static final int BLOCK = 1;
+    static final int EXPRESSION = 2;
+    static final int IF = 3;
+    static final int LAZY = 4;
+    static final int PRINT = 5;
+    static final int VAR = 6;
+    static final int WHILE = 7;
+    static final int BREAK = 8;
+    static final int FUNCTION = 9;
+    static final int RETURN = 10;
+    static final int CLASS = 11;
+
+    // expressions.
+    static final int ASSIGN = 20;
+    static final int BINARY = 21;
+    static final int GROUPING = 22;
+    static final int LITERAL = 23;
+    static final int LOGICAL = 24;
+    static final int UNARY = 25;
+    static final int VARIABLE = 26;
+    static final int CALL = 27;
+    static final int GET = 28;
+    static final int SET = 29;
+    static final int SUPER = 30;
+    static final int THIS = 31;
+
+    // the values of the literals.
+    static final int VALUE_NIL = 0;
+    static final int VALUE_TRUE = 1;
+    static final int VALUE_FALSE = 2;
+    static final int VALUE_NUMBER = 3;
+    static final int VALUE_STRING = 4;
+
+    private AstFormat() {}
+}
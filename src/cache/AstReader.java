@@ -0,0 +1,198 @@
+package cache;
+
+import ast.Expr;
+import ast.Stmt;
+import scanner.Token;
+import scanner.TokenType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static cache.AstFormat.*;
+
+/*
+* the ast reader rebuilds the statements written by the AstWriter, straight from the bytes of the cached file.
+* A file that doesn't follow the format throws an IllegalStateException.
+* */
+class AstReader {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final ByteBuffer in;
+    private byte[] buffer = new byte[64];   // the bytes of the string being read.
+
+    AstReader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    List<Stmt> read() {
+        int count = count();
+        List<Stmt> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            statements.add(statement());
+        }
+        if (in.hasRemaining()) throw new IllegalStateException("Unexpected bytes after the statements.");
+        return statements;
+    }
+
+    private Stmt statement() {
+        int tag = in.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case BLOCK: {
+                int count = count();
+                List<Stmt> statements = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    statements.add(statement());
+                }
+                return new Stmt.Block(statements);
+            }
+            case EXPRESSION:
+                return new Stmt.Expression(expression());
+            case IF:
+                return new Stmt.If(expression(), statement(), statement());
+            case LAZY: {
+                int count = count();
+                List<Token> body = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    body.add(token());
+                }
+                return new Stmt.Lazy(body);
+            }
+            case PRINT:
+                return new Stmt.Print(expression());
+            case VAR:
+                return new Stmt.Var(token(), expression());
+            case WHILE:
+                return new Stmt.While(expression(), statement());
+            case BREAK:
+                return new Stmt.Break(token());
+            case FUNCTION: {
+                Token name = token();
+                int count = count();
+                List<Token> params = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    params.add(token());
+                }
+                count = count();
+                List<Stmt> body = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    body.add(statement());
+                }
+                return new Stmt.Function(name, params, body);
+            }
+            case RETURN:
+                return new Stmt.Return(token(), expression());
+            case CLASS: {
+                Token name = token();
+                Expr.Variable superclass = superclass();
+                int count = count();
+                List<Stmt.Function> methods = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    methods.add(method());
+                }
+                return new Stmt.Class(name, superclass, methods);
+            }
+            default:
+                throw new IllegalStateException("Unknown statement tag " + tag + ".");
+        }
+    }
+
+    private Expr expression() {
+        int tag = in.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case ASSIGN:
+                return new Expr.Assign(token(), expression());
+            case BINARY:
+                return new Expr.Binary(expression(), token(), expression());
+            case CALL: {
+                Expr callee = expression();
+                Token paren = token();
+                int count = count();
+                List<Expr> arguments = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    arguments.add(expression());
+                }
+                return new Expr.Call(callee, paren, arguments);
+            }
+            case GROUPING:
+                return new Expr.Grouping(expression());
+            case LITERAL:
+                return new Expr.Literal(value());
+            case LOGICAL:
+                return new Expr.Logical(expression(), token(), expression());
+            case UNARY:
+                return new Expr.Unary(token(), expression());
+            case VARIABLE:
+                return new Expr.Variable(token());
+            case GET:
+                return new Expr.Get(expression(), token());
+            case SET:
+                return new Expr.Set(expression(), token(), expression());
+            case SUPER:
+                return new Expr.Super(token(), token());
+            case THIS:
+                return new Expr.This(token());
+            default:
+                throw new IllegalStateException("Unknown expression tag " + tag + ".");
+        }
+    }
+
+    // a superclass is a variable, or null for a class without one.
+    private Expr.Variable superclass() {
+        Expr expr = expression();
+        if (expr != null && !(expr instanceof Expr.Variable)) throw new IllegalStateException("Expect a variable.");
+        return (Expr.Variable) expr;
+    }
+
+    private Stmt.Function method() {
+        Stmt stmt = statement();
+        if (!(stmt instanceof Stmt.Function)) throw new IllegalStateException("Expect a function.");
+        return (Stmt.Function) stmt;
+    }
+
+    // a count of nodes or bytes, each one takes at least a byte so it can't be more than what is left.
+    private int count() {
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining()) throw new IllegalStateException("Invalid count " + count + ".");
+        return count;
+    }
+
+    private Token token() {
+        int type = in.get();
+        if (type < -1 || type >= TYPES.length) throw new IllegalStateException("Unknown token type " + type + ".");
+        String lexeme = string();
+        Object literal = value();
+        int line = in.getInt();
+        return new Token(lexeme, type == -1 ? null : TYPES[type], literal, line);
+    }
+
+    private Object value() {
+        int tag = in.get();
+        return switch (tag) {
+            case VALUE_NIL -> null;
+            case VALUE_TRUE -> true;
+            case VALUE_FALSE -> false;
+            case VALUE_NUMBER -> in.getDouble();
+            case VALUE_STRING -> string();
+            default -> throw new IllegalStateException("Unknown value tag " + tag + ".");
+        };
+    }
+
+    private String string() {
+        int length = count();
+        String text = new String(bytes(length), 0, length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return text;
+    }
+
+    private byte[] bytes(int length) {
+        if (length > buffer.length) buffer = new byte[Math.max(length, buffer.length * 2)];
+        in.get(in.position(), buffer, 0, length);
+        return buffer;
+    }
+}
@@ -0,0 +1,305 @@
+package cache;
+
+import ast.Expr;
+import ast.Stmt;
+import scanner.Token;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static cache.AstFormat.*;
+
+/*
+* the ast writer walks the statements and writes every node as its tag followed by its fields, in the order of
+* the constructor. The fields filled by the passes after the parser (slots, depths...) are not written, they are
+* computed again when the cached program runs.
+* */
+class AstWriter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private final DataOutputStream out;
+
+    AstWriter(DataOutputStream out) {
+        this.out = out;
+    }
+
+    void write(List<Stmt> statements) throws IOException {
+        out.writeInt(statements.size());
+        try {
+            for (Stmt statement : statements) {
+                write(statement);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void write(Stmt stmt) {
+        if (stmt == null) {
+            tag(NULL);
+        } else {
+            stmt.accept(this);
+        }
+    }
+
+    private void write(Expr expr) {
+        if (expr == null) {
+            tag(NULL);
+        } else {
+            expr.accept(this);
+        }
+    }
+
+    private void write(Token token) {
+        try {
+            out.writeByte(token.type() == null ? -1 : token.type().ordinal());
+            write(token.lexeme());
+            writeValue(token.literal());
+            out.writeInt(token.line());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NIL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((boolean) value ? VALUE_TRUE : VALUE_FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(VALUE_NUMBER);
+            out.writeDouble((double) value);
+        } else {
+            out.writeByte(VALUE_STRING);
+            write((String) value);
+        }
+    }
+
+    // DataOutputStream.writeUTF is limited to 64KB, a string literal can be longer.
+    private void write(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void tag(int tag) {
+        try {
+            out.writeByte(tag);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void count(int count) {
+        try {
+            out.writeInt(count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        tag(BLOCK);
+        count(stmt.statements.size());
+        for (Stmt statement : stmt.statements) {
+            write(statement);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        tag(BREAK);
+        write(stmt.keyword);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        tag(CLASS);
+        write(stmt.name);
+        write(stmt.superclass);
+        count(stmt.methods.size());
+        for (Stmt.Function method : stmt.methods) {
+            write(method);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        tag(EXPRESSION);
+        write(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        tag(FUNCTION);
+        write(stmt.name);
+        count(stmt.params.size());
+        for (Token param : stmt.params) {
+            write(param);
+        }
+        count(stmt.body.size());
+        for (Stmt statement : stmt.body) {
+            write(statement);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        tag(IF);
+        write(stmt.condition);
+        write(stmt.thenBranch);
+        write(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitLazyStmt(Stmt.Lazy stmt) {
+        tag(LAZY);
+        count(stmt.body.size());
+        for (Token token : stmt.body) {
+            write(token);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        tag(PRINT);
+        write(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        tag(RETURN);
+        write(stmt.keyword);
+        write(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        tag(VAR);
+        write(stmt.name);
+        write(stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        tag(WHILE);
+        write(stmt.condition);
+        write(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        tag(ASSIGN);
+        write(expr.name);
+        write(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        tag(CALL);
+        write(expr.callee);
+        write(expr.paren);
+        count(expr.arguments.size());
+        for (Expr argument : expr.arguments) {
+            write(argument);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        tag(BINARY);
+        write(expr.left);
+        write(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        tag(GET);
+        write(expr.object);
+        write(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        tag(GROUPING);
+        write(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        tag(LITERAL);
+        try {
+            writeValue(expr.value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        tag(LOGICAL);
+        write(expr.left);
+        write(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        tag(SET);
+        write(expr.object);
+        write(expr.name);
+        write(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        tag(SUPER);
+        write(expr.keyword);
+        write(expr.method);
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        tag(THIS);
+        write(expr.keyword);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        tag(UNARY);
+        write(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        tag(VARIABLE);
+        write(expr.name);
+        return null;
+    }
+}
@@ -0,0 +1,531 @@
+package closure;
+
+import ast.Expr;
+import ast.Stmt;
+import environment.Environment;
+import evaluate.Interpreter;
+import evaluate.RuntimeError;
+import scanner.Token;
+import scanner.TokenType;
+
+import java.util.List;
+
+import static evaluate.Interpreter.isEqual;
+import static evaluate.Interpreter.isTruthy;
+
+/*
+* the closure compiler walks the resolved ast once and turns every node into a small lambda bound to the lambdas
+* of its children. Running the program is then a chain of direct calls, there is no visitor dispatch left.
+*
+* Numeric expressions compile to NumberEvaluator and conditions to ConditionEvaluator, so numbers and booleans
+* are passed unboxed between the nodes that can do it.
+* When the program uses a feature the compiler doesn't handle (functions), it throws Unsupported.
+* */
+public class ClosureCompiler implements Expr.Visitor<ClosureCompiler.Evaluator>, Stmt.Visitor<ClosureCompiler.Executor> {
+
+    public static class Unsupported extends RuntimeException {
+        public Unsupported(String message) {
+            super(message);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Executor {
+        void execute(Environment environment);
+    }
+
+    @FunctionalInterface
+    public interface Evaluator {
+        Object evaluate(Environment environment);
+    }
+
+    @FunctionalInterface
+    public interface NumberEvaluator {
+        double evaluate(Environment environment);
+    }
+
+    @FunctionalInterface
+    public interface ConditionEvaluator {
+        boolean test(Environment environment);
+    }
+
+    /*
+    * a break is thrown up to the loop it leaves. It's a single instance without a stack trace, so throwing it
+    * costs about as much as a return, and only the loops whose body has a break catch it.
+    * */
+    private static final class Break extends RuntimeException {
+        private static final Break INSTANCE = new Break();
+
+        private Break() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final Environment globals;
+
+    public ClosureCompiler(Environment globals) {
+        this.globals = globals;
+    }
+
+    public Executor compile(List<Stmt> statements) {
+        Executor[] executors = compileAll(statements);
+        return environment -> {
+            for (Executor executor : executors) {
+                executor.execute(environment);
+            }
+        };
+    }
+
+    private Executor[] compileAll(List<Stmt> statements) {
+        Executor[] executors = new Executor[statements.size()];
+        for (int i = 0; i < executors.length; i++) {
+            executors[i] = statements.get(i).accept(this);
+        }
+        return executors;
+    }
+
+    private Evaluator compile(Expr expr) {
+        return expr.accept(this);
+    }
+
+    @Override
+    public Executor visitBlockStmt(Stmt.Block stmt) {
+        Executor[] body = compileAll(stmt.statements);
+
+        // a block without declarations is not a scope, it runs in the environment around it.
+        if (stmt.slots == 0) {
+            return environment -> {
+                for (Executor executor : body) {
+                    executor.execute(environment);
+                }
+            };
+        }
+
+        int slots = stmt.slots;
+        return environment -> {
+            Environment inner = new Environment(environment, slots);
+            for (Executor executor : body) {
+                executor.execute(inner);
+            }
+        };
+    }
+
+    @Override
+    public Executor visitBreakStmt(Stmt.Break stmt) {
+        return environment -> {
+            throw Break.INSTANCE;
+        };
+    }
+
+    @Override
+    public Executor visitExpressionStmt(Stmt.Expression stmt) {
+        Evaluator expression = compile(stmt.expression);
+        return expression::evaluate;
+    }
+
+    // functions run in the interpreter.
+    @Override
+    public Executor visitClassStmt(Stmt.Class stmt) {
+        throw new Unsupported("class");
+    }
+
+    @Override
+    public Executor visitFunctionStmt(Stmt.Function stmt) {
+        throw new Unsupported("function");
+    }
+
+    @Override
+    public Executor visitIfStmt(Stmt.If stmt) {
+        ConditionEvaluator condition = compileCondition(stmt.condition);
+        Executor thenBranch = stmt.thenBranch.accept(this);
+        if (stmt.elseBranch == null) {
+            return environment -> {
+                if (condition.test(environment)) thenBranch.execute(environment);
+            };
+        }
+
+        Executor elseBranch = stmt.elseBranch.accept(this);
+        return environment -> {
+            if (condition.test(environment)) {
+                thenBranch.execute(environment);
+            } else {
+                elseBranch.execute(environment);
+            }
+        };
+    }
+
+    // lazy blocks are only made for the tree-walking interpreter.
+    @Override
+    public Executor visitLazyStmt(Stmt.Lazy stmt) {
+        throw new IllegalStateException("A lazy block can only run in the interpreter.");
+    }
+
+    @Override
+    public Executor visitPrintStmt(Stmt.Print stmt) {
+        Evaluator expression = compile(stmt.expression);
+        return environment -> System.out.println(Interpreter.stringify(expression.evaluate(environment)));
+    }
+
+    @Override
+    public Executor visitReturnStmt(Stmt.Return stmt) {
+        throw new Unsupported("return");
+    }
+
+    @Override
+    public Executor visitVarStmt(Stmt.Var stmt) {
+        Evaluator initializer = stmt.initializer == null ? environment -> null : compile(stmt.initializer);
+
+        if (stmt.slot == -1) {
+            Token name = stmt.name;
+            return environment -> globals.define(name, initializer.evaluate(environment));
+        }
+
+        int slot = stmt.slot;
+        return environment -> environment.defineAt(slot, initializer.evaluate(environment));
+    }
+
+    @Override
+    public Executor visitWhileStmt(Stmt.While stmt) {
+        ConditionEvaluator condition = compileCondition(stmt.condition);
+        Executor body = stmt.body.accept(this);
+        if (!breaks(stmt.body)) {
+            return environment -> {
+                while (condition.test(environment)) {
+                    body.execute(environment);
+                }
+            };
+        }
+
+        return environment -> {
+            try {
+                while (condition.test(environment)) {
+                    body.execute(environment);
+                }
+            } catch (Break signal) {
+                // the loop is over.
+            }
+        };
+    }
+
+    @Override
+    public Evaluator visitCallExpr(Expr.Call expr) {
+        throw new Unsupported("call");
+    }
+
+    @Override
+    public Evaluator visitGetExpr(Expr.Get expr) {
+        throw new Unsupported("property");
+    }
+
+    @Override
+    public Evaluator visitSetExpr(Expr.Set expr) {
+        throw new Unsupported("property");
+    }
+
+    @Override
+    public Evaluator visitSuperExpr(Expr.Super expr) {
+        throw new Unsupported("super");
+    }
+
+    @Override
+    public Evaluator visitThisExpr(Expr.This expr) {
+        throw new Unsupported("this");
+    }
+
+    @Override
+    public Evaluator visitAssignExpr(Expr.Assign expr) {
+        Evaluator value = compile(expr.value);
+        Token name = expr.name;
+
+        if (expr.depth == -1) {
+            return environment -> {
+                Object result = value.evaluate(environment);
+                globals.assign(name, result);
+                return result;
+            };
+        }
+
+        int depth = expr.depth;
+        int slot = expr.slot;
+        return environment -> {
+            Object result = value.evaluate(environment);
+            environment.assignAt(depth, slot, result);
+            return result;
+        };
+    }
+
+    @Override
+    public Evaluator visitBinaryExpr(Expr.Binary expr) {
+        Token operator = expr.operator;
+
+        switch (operator.type()) {
+            case MINUS, STAR, SLASH -> {
+                NumberEvaluator number = compileNumber(expr);
+                return number::evaluate;
+            }
+            case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL -> {
+                ConditionEvaluator condition = compileCondition(expr);
+                return condition::test;
+            }
+        }
+
+        if (isNumeric(expr.left) && isNumeric(expr.right)) {
+            NumberEvaluator left = compileNumber(expr.left);
+            NumberEvaluator right = compileNumber(expr.right);
+            return switch (operator.type()) {
+                case PLUS -> environment -> left.evaluate(environment) + right.evaluate(environment);
+                case EQUAL_EQUAL -> environment -> isEqual(left.evaluate(environment), right.evaluate(environment));
+                default -> environment -> !isEqual(left.evaluate(environment), right.evaluate(environment));
+            };
+        }
+
+        Evaluator left = compile(expr.left);
+        Evaluator right = compile(expr.right);
+        return switch (operator.type()) {
+            case PLUS -> environment -> add(operator, left.evaluate(environment), right.evaluate(environment));
+            case EQUAL_EQUAL -> environment -> isEqual(left.evaluate(environment), right.evaluate(environment));
+            default -> environment -> !isEqual(left.evaluate(environment), right.evaluate(environment));
+        };
+    }
+
+    @Override
+    public Evaluator visitGroupingExpr(Expr.Grouping expr) {
+        return compile(expr.expression);
+    }
+
+    @Override
+    public Evaluator visitLiteralExpr(Expr.Literal expr) {
+        Object value = expr.value;
+        return environment -> value;
+    }
+
+    @Override
+    public Evaluator visitLogicalExpr(Expr.Logical expr) {
+        Evaluator left = compile(expr.left);
+        Evaluator right = compile(expr.right);
+
+        if (expr.operator.type() == TokenType.OR) {
+            return environment -> {
+                Object value = left.evaluate(environment);
+                if (isTruthy(value)) return value;
+                return right.evaluate(environment);
+            };
+        }
+
+        return environment -> {
+            Object value = left.evaluate(environment);
+            if (!isTruthy(value)) return value;
+            return right.evaluate(environment);
+        };
+    }
+
+    @Override
+    public Evaluator visitUnaryExpr(Expr.Unary expr) {
+        if (expr.operator.type() == TokenType.MINUS) {
+            NumberEvaluator number = compileNumber(expr);
+            return number::evaluate;
+        }
+
+        ConditionEvaluator condition = compileCondition(expr);
+        return condition::test;
+    }
+
+    @Override
+    public Evaluator visitVariableExpr(Expr.Variable expr) {
+        if (expr.depth == -1) {
+            Token name = expr.name;
+            return environment -> globals.get(name);
+        }
+
+        int depth = expr.depth;
+        int slot = expr.slot;
+        return environment -> environment.getAt(depth, slot);
+    }
+
+    // whether a statement has a break that leaves the loop around it (the breaks of inner loops stay inside them).
+    private static boolean breaks(Stmt stmt) {
+        if (stmt instanceof Stmt.Break) return true;
+        if (stmt instanceof Stmt.Block) {
+            for (Stmt statement : ((Stmt.Block) stmt).statements) {
+                if (breaks(statement)) return true;
+            }
+            return false;
+        }
+        if (stmt instanceof Stmt.If) {
+            Stmt.If ifStmt = (Stmt.If) stmt;
+            return breaks(ifStmt.thenBranch) || (ifStmt.elseBranch != null && breaks(ifStmt.elseBranch));
+        }
+        return false;
+    }
+
+    /*
+    * An expression is numeric when it always produces a number or fails with a runtime error
+    * (a number literal, a '-', '*' or '/' expression, or a negation).
+    * */
+    private static boolean isNumeric(Expr expr) {
+        if (expr instanceof Expr.Literal) return ((Expr.Literal) expr).value instanceof Double;
+        if (expr instanceof Expr.Grouping) return isNumeric(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary) return ((Expr.Unary) expr).operator.type() == TokenType.MINUS;
+        if (expr instanceof Expr.Binary) {
+            TokenType type = ((Expr.Binary) expr).operator.type();
+            return type == TokenType.MINUS || type == TokenType.STAR || type == TokenType.SLASH;
+        }
+        return false;
+    }
+
+    // compile a numeric expression into a lambda that returns a primitive double.
+    private NumberEvaluator compileNumber(Expr expr) {
+        if (expr instanceof Expr.Literal) {
+            double value = (double) ((Expr.Literal) expr).value;
+            return environment -> value;
+        }
+        if (expr instanceof Expr.Grouping) return compileNumber(((Expr.Grouping) expr).expression);
+
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary) expr;
+            if (isNumeric(unary.right)) {
+                NumberEvaluator right = compileNumber(unary.right);
+                return environment -> -right.evaluate(environment);
+            }
+
+            Evaluator right = compile(unary.right);
+            Token operator = unary.operator;
+            return environment -> {
+                Object value = right.evaluate(environment);
+                if (!(value instanceof Double)) throw new RuntimeError(operator, "Operand must be number.");
+                return -(double) value;
+            };
+        }
+
+        Expr.Binary binary = (Expr.Binary) expr;
+        Token operator = binary.operator;
+
+        // both operands are numbers, their own nodes already report the errors.
+        if (isNumeric(binary.left) && isNumeric(binary.right)) {
+            NumberEvaluator left = compileNumber(binary.left);
+            NumberEvaluator right = compileNumber(binary.right);
+            return switch (operator.type()) {
+                case MINUS -> environment -> left.evaluate(environment) - right.evaluate(environment);
+                case STAR -> environment -> left.evaluate(environment) * right.evaluate(environment);
+                default -> environment -> left.evaluate(environment) / right.evaluate(environment);
+            };
+        }
+
+        // both operands are evaluated before their types are checked, like the interpreter does.
+        Evaluator left = compile(binary.left);
+        Evaluator right = compile(binary.right);
+        return switch (operator.type()) {
+            case MINUS -> environment -> {
+                Object a = left.evaluate(environment);
+                Object b = right.evaluate(environment);
+                checkNumberOperands(operator, a, b);
+                return (double) a - (double) b;
+            };
+            case STAR -> environment -> {
+                Object a = left.evaluate(environment);
+                Object b = right.evaluate(environment);
+                checkNumberOperands(operator, a, b);
+                return (double) a * (double) b;
+            };
+            default -> environment -> {
+                Object a = left.evaluate(environment);
+                Object b = right.evaluate(environment);
+                checkNumberOperands(operator, a, b);
+                return (double) a / (double) b;
+            };
+        };
+    }
+
+    // compile an expression whose truthiness is all we need: the condition of an if, a while, a '!' ...
+    private ConditionEvaluator compileCondition(Expr expr) {
+        if (expr instanceof Expr.Grouping) return compileCondition(((Expr.Grouping) expr).expression);
+
+        if (expr instanceof Expr.Unary && ((Expr.Unary) expr).operator.type() == TokenType.BANG) {
+            ConditionEvaluator right = compileCondition(((Expr.Unary) expr).right);
+            return environment -> !right.test(environment);
+        }
+
+        if (expr instanceof Expr.Logical) {
+            Expr.Logical logical = (Expr.Logical) expr;
+            ConditionEvaluator left = compileCondition(logical.left);
+            ConditionEvaluator right = compileCondition(logical.right);
+            if (logical.operator.type() == TokenType.OR) {
+                return environment -> left.test(environment) || right.test(environment);
+            }
+            return environment -> left.test(environment) && right.test(environment);
+        }
+
+        if (expr instanceof Expr.Binary) {
+            ConditionEvaluator comparison = compileComparison((Expr.Binary) expr);
+            if (comparison != null) return comparison;
+        }
+
+        Evaluator value = compile(expr);
+        return environment -> isTruthy(value.evaluate(environment));
+    }
+
+    // compile a '>', '>=', '<' or '<=' expression, it returns null for the other operators.
+    private ConditionEvaluator compileComparison(Expr.Binary binary) {
+        Token operator = binary.operator;
+        switch (operator.type()) {
+            case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL -> {}
+            default -> {
+                return null;
+            }
+        }
+
+        if (isNumeric(binary.left) && isNumeric(binary.right)) {
+            NumberEvaluator left = compileNumber(binary.left);
+            NumberEvaluator right = compileNumber(binary.right);
+            return switch (operator.type()) {
+                case GREATER -> environment -> left.evaluate(environment) > right.evaluate(environment);
+                case GREATER_EQUAL -> environment -> left.evaluate(environment) >= right.evaluate(environment);
+                case LESS -> environment -> left.evaluate(environment) < right.evaluate(environment);
+                default -> environment -> left.evaluate(environment) <= right.evaluate(environment);
+            };
+        }
+
+        Evaluator left = compile(binary.left);
+        Evaluator right = compile(binary.right);
+        return switch (operator.type()) {
+            case GREATER -> environment -> {
+                Object a = left.evaluate(environment);
+                Object b = right.evaluate(environment);
+                checkNumberOperands(operator, a, b);
+                return (double) a > (double) b;
+            };
+            case GREATER_EQUAL -> environment -> {
+                Object a = left.evaluate(environment);
+                Object b = right.evaluate(environment);
+                checkNumberOperands(operator, a, b);
+                return (double) a >= (double) b;
+            };
+            case LESS -> environment -> {
+                Object a = left.evaluate(environment);
+                Object b = right.evaluate(environment);
+                checkNumberOperands(operator, a, b);
+                return (double) a < (double) b;
+            };
+            default -> environment -> {
+                Object a = left.evaluate(environment);
+                Object b = right.evaluate(environment);
+                checkNumberOperands(operator, a, b);
+                return (double) a <= (double) b;
+            };
+        };
+    }
+
+    // the '+' operator adds numbers and concatenates strings, with a string and a number it concatenates too.
+    private static Object add(Token operator, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) return (double) left + (double) right;
+        if (left instanceof String && right instanceof String) return left + (String) right;
+        if (left instanceof String && right instanceof Double) return (String) left + right;
+        if (left instanceof Double && right instanceof String) return left + (String) right;
+        throw new RuntimeError(operator, "Operands must be two numbers or strings.");
+    }
+
+    private static void checkNumberOperands(Token operator, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) return;
+        throw new RuntimeError(operator, "Operands must be numbers.");
+    }
+}
@@ -0,0 +1,35 @@
+package closure;
+
+import ast.Stmt;
+import environment.Environment;
+import evaluate.Interpreter;
+import evaluate.RuntimeError;
+import lox.Main;
+
+import java.util.List;
+
+/*
+* an execution engine that compiles the resolved statements with the ClosureCompiler and then runs the lambdas.
+* When the program can't be compiled, it's run by the tree-walking interpreter instead. Both share the same
+* global environment, so the REPL can go from one to the other.
+* */
+public class ClosureInterpreter {
+    private final Interpreter fallback = new Interpreter();
+
+    public void interpret(List<Stmt> statements) {
+        Environment globals = fallback.globals();
+        ClosureCompiler.Executor program;
+        try {
+            program = new ClosureCompiler(globals).compile(statements);
+        } catch (ClosureCompiler.Unsupported unsupported) {
+            fallback.interpret(statements);
+            return;
+        }
+
+        try {
+            program.execute(globals);
+        } catch (RuntimeError re) {
+            Main.runtimeError(re);
+        }
+    }
+}
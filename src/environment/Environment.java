@@ -1,23 +1,37 @@
 package environment;
 
 import evaluate.RuntimeError;
+import scanner.Symbol;
 import scanner.Token;
 
-import java.util.Map;
-import java.util.HashMap;
+import java.util.Arrays;
 
+/*
+* The global environment keeps its variables in an array indexed by the id of their symbol, because globals are
+* looked up by name at runtime: the scanner interned the names, so a lookup doesn't hash any string.
+* The environment of a block is a frame: its variables live in an array, at the slot the resolver gave them.
+* Frames are recycled by the FramePool, so the enclosing environment of a frame can change when it's reused.
+* */
 public class Environment {
-    private final Environment enclosing;  // most outer environment.
-    private final Map<String, Object> values = new HashMap<>();
+    private Environment enclosing;  // most outer environment.
+    private Object[] values;    // the global variables, UNDEFINED where there is none.
+    private final Object[] slots;   // the local variables of a block.
+
+    private static final Object UNDEFINED = new Object();
 
     // this constructor will create an outer scope. It's used for global scope.
     public Environment() {
         this.enclosing = null;
+        this.values = new Object[64];
+        Arrays.fill(values, UNDEFINED);
+        this.slots = null;
     }
 
-    // this constructor will create an inner scope.
-    public Environment(Environment enclosing) {
+    // this constructor will create an inner scope with room for the given number of local variables.
+    public Environment(Environment enclosing, int size) {
         this.enclosing = enclosing;
+        this.values = null;
+        this.slots = new Object[size];
     }
 
     /*
@@ -27,8 +41,15 @@ public class Environment {
     * The variable definition can also allow redefinition of a variable which means that if we define a variable that
     * has already been added to the environment, that variable will be overwritten.
     * */
-    public void define(String name, Object value) {
-        values.put(name, value);
+    public void define(Token name, Object value) {
+        int id = name.symbol().id();
+        if (id >= values.length) {
+            // there are new symbols since the last global was defined.
+            int size = values.length;
+            values = Arrays.copyOf(values, Math.max(id + 1, size * 2));
+            Arrays.fill(values, size, values.length, UNDEFINED);
+        }
+        values[id] = value;
     }
 
     /*
@@ -36,8 +57,8 @@ public class Environment {
     * If the variable doesn't exit we throw an error.
     * */
     public Object get(Token name) {
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
+        if (values != null && isDefined(name.symbol())) {
+            return values[name.symbol().id()];
         }
 
         // look at the outer scope if the variable is not found inside the inner scope.
@@ -47,8 +68,8 @@ public class Environment {
     }
 
     public void assign(Token name, Object value) {
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme(), value);
+        if (values != null && isDefined(name.symbol())) {
+            values[name.symbol().id()] = value;
             return;
         }
 
@@ -59,4 +80,46 @@ public class Environment {
 
         throw new RuntimeError(name, "undefined variable '" + name.lexeme() + "'.");
     }
+
+    private boolean isDefined(Symbol symbol) {
+        return symbol.id() < values.length && values[symbol.id()] != UNDEFINED;
+    }
+
+    // define a local variable of this frame.
+    public void defineAt(int slot, Object value) {
+        slots[slot] = value;
+    }
+
+    // the resolver already knows in which frame and at which slot a local variable lives.
+    public Object getAt(int depth, int slot) {
+        return ancestor(depth).slots[slot];
+    }
+
+    public void assignAt(int depth, int slot, Object value) {
+        ancestor(depth).slots[slot] = value;
+    }
+
+    // the number of local variables of this frame.
+    int size() {
+        return slots.length;
+    }
+
+    // reuse this frame for another run of a block, inside the given environment.
+    void reset(Environment enclosing) {
+        this.enclosing = enclosing;
+    }
+
+    // forget the values of a frame that goes back to the pool, so it doesn't keep them alive.
+    void clear() {
+        this.enclosing = null;
+        Arrays.fill(slots, null);
+    }
+
+    private Environment ancestor(int depth) {
+        Environment environment = this;
+        for (int i = 0; i < depth; i++) {
+            environment = environment.enclosing;
+        }
+        return environment;
+    }
 }
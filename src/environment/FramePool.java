@@ -0,0 +1,34 @@
+package environment;
+
+/*
+* A pool of the frames of the blocks. A block takes a frame when it starts and gives it back when it ends, so a
+* loop whose body declares variables reuses the same frame on every iteration instead of allocating a new one.
+*
+* Blocks end in the reverse order they start, so the free frames of each size are kept on a stack.
+* Large frames and frames beyond the capacity of the pool are left to the garbage collector.
+* */
+public class FramePool {
+    private static final int MAX_SLOTS = 16;    // the largest frame that is pooled.
+    private static final int MAX_FREE = 64;     // the number of free frames kept for each size.
+
+    private final Environment[][] free = new Environment[MAX_SLOTS + 1][MAX_FREE];
+    private final int[] count = new int[MAX_SLOTS + 1];
+
+    public Environment acquire(Environment enclosing, int size) {
+        if (size <= MAX_SLOTS && count[size] > 0) {
+            Environment frame = free[size][--count[size]];
+            free[size][count[size]] = null;
+            frame.reset(enclosing);
+            return frame;
+        }
+        return new Environment(enclosing, size);
+    }
+
+    public void release(Environment frame) {
+        int size = frame.size();
+        if (size > MAX_SLOTS || count[size] == MAX_FREE) return;
+
+        frame.clear();
+        free[size][count[size]++] = frame;
+    }
+}
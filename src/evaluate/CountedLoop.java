@@ -0,0 +1,207 @@
+package evaluate;
+
+import ast.Expr;
+import ast.Stmt;
+import scanner.TokenType;
+
+import java.util.List;
+
+/*
+* The parser desugars `for (var i = a; i < b; i = i + c) body` into
+*     Block[Var i = a, While(i < b, Block[body, i = i + c])]
+*
+* This class recognizes that shape, so the interpreter can run it as a counted loop on a primitive counter.
+* The condition can use '<', '<=', '>' or '>=' with a number literal or a variable as limit, the step must be
+* a number literal added or subtracted, and the body must not assign the counter. The body can break the loop.
+* */
+final class CountedLoop implements Expr.Visitor<Boolean>, Stmt.Visitor<Boolean> {
+    // the states of the countedLoop field of a block.
+    static final int UNKNOWN = 0;
+    static final int COUNTED = 1;
+    static final int GENERIC = 2;
+
+    private final String counter;   // the visitor looks for an assignment to this variable.
+
+    private CountedLoop(String counter) {
+        this.counter = counter;
+    }
+
+    static int analyze(Stmt.Block block) {
+        return matches(block) ? COUNTED : GENERIC;
+    }
+
+    private static boolean matches(Stmt.Block block) {
+        if (block.statements.size() != 2) return false;
+        if (!(block.statements.get(0) instanceof Stmt.Var var) || var.initializer == null) return false;
+        if (!(block.statements.get(1) instanceof Stmt.While loop)) return false;
+
+        // the condition compares the counter with a limit.
+        if (!(loop.condition instanceof Expr.Binary condition)) return false;
+        switch (condition.operator.type()) {
+            case LESS, LESS_EQUAL, GREATER, GREATER_EQUAL -> {}
+            default -> {
+                return false;
+            }
+        }
+        if (!isCounter(condition.left, var, 0)) return false;
+        if (!(condition.right instanceof Expr.Variable || isNumber(condition.right))) return false;
+
+        // the body is followed by the increment.
+        if (!(loop.body instanceof Stmt.Block inner) || inner.statements.size() != 2) return false;
+        if (!(inner.statements.get(1) instanceof Stmt.Expression increment)) return false;
+        if (!(increment.expression instanceof Expr.Assign assign)) return false;
+        if (inner.slots != 0 || assign.depth != 0 || assign.slot != var.slot) return false;
+        if (!(assign.value instanceof Expr.Binary step)) return false;
+        if (step.operator.type() != TokenType.PLUS && step.operator.type() != TokenType.MINUS) return false;
+        if (!isCounter(step.left, var, 0) || !isNumber(step.right)) return false;
+
+        Stmt body = inner.statements.get(0);
+        return body != null && !body.accept(new CountedLoop(var.name.lexeme()));
+    }
+
+    // the body of a loop runs with the counter in a local variable.
+    private static boolean isCounter(Expr expr, Stmt.Var var, int depth) {
+        return expr instanceof Expr.Variable variable && variable.depth == depth && variable.slot == var.slot;
+    }
+
+    private static boolean isNumber(Expr expr) {
+        return expr instanceof Expr.Literal literal && literal.value instanceof Double;
+    }
+
+    private boolean assigns(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            if (statement.accept(this)) return true;
+        }
+        return false;
+    }
+
+    private boolean assigns(Expr expr) {
+        return expr != null && expr.accept(this);
+    }
+
+    @Override
+    public Boolean visitBlockStmt(Stmt.Block stmt) {
+        return assigns(stmt.statements);
+    }
+
+    @Override
+    public Boolean visitBreakStmt(Stmt.Break stmt) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitExpressionStmt(Stmt.Expression stmt) {
+        return assigns(stmt.expression);
+    }
+
+    // a function declared in the body sees the counter, its body must not assign it either.
+    @Override
+    public Boolean visitClassStmt(Stmt.Class stmt) {
+        for (Stmt.Function method : stmt.methods) {
+            if (assigns(method.body)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Boolean visitFunctionStmt(Stmt.Function stmt) {
+        return assigns(stmt.body);
+    }
+
+    @Override
+    public Boolean visitIfStmt(Stmt.If stmt) {
+        return assigns(stmt.condition) || stmt.thenBranch.accept(this)
+                || (stmt.elseBranch != null && stmt.elseBranch.accept(this));
+    }
+
+    // the body of a lazy block isn't parsed yet, it could assign the counter.
+    @Override
+    public Boolean visitLazyStmt(Stmt.Lazy stmt) {
+        return true;
+    }
+
+    @Override
+    public Boolean visitPrintStmt(Stmt.Print stmt) {
+        return assigns(stmt.expression);
+    }
+
+    @Override
+    public Boolean visitReturnStmt(Stmt.Return stmt) {
+        return assigns(stmt.value);
+    }
+
+    @Override
+    public Boolean visitVarStmt(Stmt.Var stmt) {
+        return assigns(stmt.initializer);
+    }
+
+    @Override
+    public Boolean visitWhileStmt(Stmt.While stmt) {
+        return assigns(stmt.condition) || stmt.body.accept(this);
+    }
+
+    // any assignment to a variable with the name of the counter disables the fast path, even a shadowing one.
+    @Override
+    public Boolean visitAssignExpr(Expr.Assign expr) {
+        return expr.name.lexeme().equals(counter) || assigns(expr.value);
+    }
+
+    @Override
+    public Boolean visitBinaryExpr(Expr.Binary expr) {
+        return assigns(expr.left) || assigns(expr.right);
+    }
+
+    @Override
+    public Boolean visitCallExpr(Expr.Call expr) {
+        if (assigns(expr.callee)) return true;
+        for (Expr argument : expr.arguments) {
+            if (assigns(argument)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Boolean visitGetExpr(Expr.Get expr) {
+        return assigns(expr.object);
+    }
+
+    @Override
+    public Boolean visitGroupingExpr(Expr.Grouping expr) {
+        return assigns(expr.expression);
+    }
+
+    @Override
+    public Boolean visitLiteralExpr(Expr.Literal expr) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitLogicalExpr(Expr.Logical expr) {
+        return assigns(expr.left) || assigns(expr.right);
+    }
+
+    @Override
+    public Boolean visitSetExpr(Expr.Set expr) {
+        return assigns(expr.object) || assigns(expr.value);
+    }
+
+    @Override
+    public Boolean visitSuperExpr(Expr.Super expr) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitThisExpr(Expr.This expr) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitUnaryExpr(Expr.Unary expr) {
+        return assigns(expr.right);
+    }
+
+    @Override
+    public Boolean visitVariableExpr(Expr.Variable expr) {
+        return false;
+    }
+}
@@ -7,16 +7,36 @@ import ast.Expr.Literal;
 import ast.Expr.Unary;
 import ast.Stmt;
 import environment.Environment;
+import environment.FramePool;
 import scanner.Token;
 import lox.Main;
+import optimizer.ConstantFolder;
+import parser.Parser;
+import resolver.Resolver;
 import scanner.TokenType;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
-	private Environment environment = new Environment();
+	private final Environment globals = new Environment();
+	private Environment environment = globals;
+	private final FramePool frames = new FramePool();	// the frames of the blocks are recycled.
+	// how the last statement completed. After a break or a return the statements are skipped until the end of the
+	// loop or of the call, which clears it. No exception is thrown, so breaking and returning cost no stack trace.
+	private static final int NORMAL = 0;
+	private static final int BREAK = 1;
+	private static final int RETURN = 2;
+	private int completion = NORMAL;
+	private Object returnValue;	// the value of the last return, until the call takes it.
+
+	// the global environment, other engines share it when they hand a program over to the interpreter.
+	public Environment globals() {
+		return globals;
+	}
 
 	/*
 	* Function to interpret the ast.
@@ -28,14 +48,19 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 			}
 		} catch (RuntimeError re) {
 			Main.runtimeError(re);
+		} catch (SyntaxErrorInBlock error) {
+			// the errors are already reported, the program stops.
 		}
 	}
 
+	// a lazy block that can't be parsed stops the program.
+	private static class SyntaxErrorInBlock extends RuntimeException {}
+
 	private void execute(Stmt statement) {
 		statement.accept(this);
 	}
 
-	private String stringify(Object object) {
+	public static String stringify(Object object) {
 		if (object == null) return "nil";
 
 		if (object instanceof Double) {
@@ -52,30 +77,79 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 	@Override
 	public Object visitAssignExpr(Expr.Assign expr) {
 		Object value = evaluate(expr.value);
-		environment.assign(expr.name, value);
+		if (expr.depth == -1) {
+			globals.assign(expr.name, value);
+		} else {
+			environment.assignAt(expr.depth, expr.slot, value);
+		}
 		return value;
 	}
 
 	@Override
 	public Object visitBinaryExpr(Binary expr) {
 		// [left-token operator right-token]
-		Object leftValue = evaluate(expr.left);		// left token evaluated
-		Object rightValue = evaluate(expr.right);	// right token evaluated
+		// the operands are evaluated left first, and a number operand is kept unboxed.
+		boolean numbers = evaluateOperands(expr);
+
+		// a specialized node only checks that its operands still have the types it was specialized for.
+		switch (expr.specialization) {
+			case Specialization.NUMBER_ADD:
+				if (numbers) return leftNumber + rightNumber;
+				break;
+			case Specialization.NUMBER_SUBTRACT:
+				if (numbers) return leftNumber - rightNumber;
+				break;
+			case Specialization.NUMBER_MULTIPLY:
+				if (numbers) return leftNumber * rightNumber;
+				break;
+			case Specialization.NUMBER_DIVIDE:
+				if (numbers) return leftNumber / rightNumber;
+				break;
+			case Specialization.NUMBER_GREATER:
+				if (numbers) return leftNumber > rightNumber;
+				break;
+			case Specialization.NUMBER_GREATER_EQUAL:
+				if (numbers) return leftNumber >= rightNumber;
+				break;
+			case Specialization.NUMBER_LESS:
+				if (numbers) return leftNumber < rightNumber;
+				break;
+			case Specialization.NUMBER_LESS_EQUAL:
+				if (numbers) return leftNumber <= rightNumber;
+				break;
+			case Specialization.NUMBER_EQUAL:
+				if (numbers) return isEqual(leftNumber, rightNumber);
+				break;
+			case Specialization.NUMBER_NOT_EQUAL:
+				if (numbers) return !isEqual(leftNumber, rightNumber);
+				break;
+			case Specialization.STRING_CONCAT:
+				if (leftValue instanceof String && rightValue instanceof String) return leftValue + (String) rightValue;
+				break;
+			case Specialization.GENERIC:
+				return genericBinary(expr, numbers);
+		}
 
+		// the node runs for the first time, or its operands changed type: rewrite it and take the generic path.
+		expr.specialization = Specialization.forBinary(
+				expr.specialization, expr.operator.type(), numbers, leftValue, rightValue);
+		return genericBinary(expr, numbers);
+	}
+
+	// evaluate a binary expression whatever the types of its operands, evaluateOperands() must have been called.
+	private Object genericBinary(Binary expr, boolean numbers) {
 		switch (expr.operator.type()) {
 			case MINUS:
-				checkNumberOperands(expr.operator, leftValue, rightValue);
-				return (double) leftValue - (double) rightValue;
 			case SLASH:
-				checkNumberOperands(expr.operator, leftValue, rightValue);
-				return (double) leftValue / (double) rightValue;
 			case STAR:
-				checkNumberOperands(expr.operator, leftValue, rightValue);
-				return (double) leftValue * (double) rightValue;
+				if (!numbers) throw new RuntimeError(expr.operator, "Operands must be numbers.");
+				return arithmetic(expr.operator, leftNumber, rightNumber);
 			case PLUS:
 				// adding two numbers together.
-				if (leftValue instanceof Double && rightValue instanceof Double)
-					return (double) leftValue + (double) rightValue;
+				if (numbers) return leftNumber + rightNumber;
+
+				Object leftValue = operand(this.leftValue, leftNumber);
+				Object rightValue = operand(this.rightValue, rightNumber);
 				// concatenating two strings together.
 				if (leftValue instanceof String && rightValue instanceof String)
 					return leftValue + (String) rightValue;
@@ -89,31 +163,295 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 				// if neither of the two operands are numbers or strings we raise a runtime error.
 				throw new RuntimeError(expr.operator, "Operands must be two numbers or strings.");
             case GREATER:
-				checkNumberOperands(expr.operator, leftValue, rightValue);
-				return (double) leftValue > (double) rightValue;
 			case GREATER_EQUAL:
-				checkNumberOperands(expr.operator, leftValue, rightValue);
-				return (double) leftValue >= (double) rightValue;
 			case LESS:
-				checkNumberOperands(expr.operator, leftValue, rightValue);
-				return (double) leftValue < (double) rightValue;
 			case LESS_EQUAL:
-				checkNumberOperands(expr.operator, leftValue, rightValue);
-				return (double) leftValue <= (double) rightValue;
+				if (!numbers) throw new RuntimeError(expr.operator, "Operands must be numbers.");
+				return compare(expr.operator, leftNumber, rightNumber);
 			// a != a
 			case BANG_EQUAL:
-				return !isEqual(leftValue, rightValue);
+				if (numbers) return !isEqual(leftNumber, rightNumber);
+				return !isEqual(operand(this.leftValue, leftNumber), operand(this.rightValue, rightNumber));
 			case EQUAL_EQUAL:
-				return isEqual(leftValue, rightValue);
+				if (numbers) return isEqual(leftNumber, rightNumber);
+				return isEqual(operand(this.leftValue, leftNumber), operand(this.rightValue, rightNumber));
 		}
 
 		// unreachable code...
 		return null;
 	}
 
-	private void checkNumberOperands(Token operator, Object leftValue, Object rightValue) {
-		if (leftValue instanceof Double && rightValue instanceof Double) return;
-		throw new RuntimeError(operator, "Operands must be numbers.");
+	/*
+	* Evaluate the two operands of a binary expression, the left one first, and return true if both are numbers.
+	*
+	* The results are left in the fields below rather than returned, so a number never has to be boxed:
+	* a number operand is stored in leftNumber/rightNumber and its value field is set to NUMBER.
+	* They must be read right after the call, before anything else is evaluated.
+	* */
+	private static final Object NUMBER = new Object();
+	private Object leftValue;
+	private Object rightValue;
+	private double leftNumber;
+	private double rightNumber;
+
+	private boolean evaluateOperands(Binary expr) {
+		double left = 0;
+		Object leftObject = NUMBER;
+		if (isNumeric(expr.left)) {
+			left = evaluateNumber(expr.left);
+		} else {
+			leftObject = evaluate(expr.left);
+			if (leftObject instanceof Double) {
+				left = (double) leftObject;
+				leftObject = NUMBER;
+			}
+		}
+
+		double right = 0;
+		Object rightObject = NUMBER;
+		if (isNumeric(expr.right)) {
+			right = evaluateNumber(expr.right);
+		} else {
+			rightObject = evaluate(expr.right);
+			if (rightObject instanceof Double) {
+				right = (double) rightObject;
+				rightObject = NUMBER;
+			}
+		}
+
+		leftNumber = left;
+		rightNumber = right;
+		leftValue = leftObject;
+		rightValue = rightObject;
+		return leftObject == NUMBER && rightObject == NUMBER;
+	}
+
+	// box an operand again, only needed when it's used as an object (string concatenation, equality).
+	private static Object operand(Object value, double number) {
+		return value == NUMBER ? (Object) number : value;
+	}
+
+	/*
+	* An expression is numeric when it always produces a number or fails with a runtime error
+	* (a number literal, a '-', '*' or '/' expression, or a negation).
+	* Those can be evaluated to a primitive double, without allocating a Double for the result.
+	* */
+	private static boolean isNumeric(Expr expr) {
+		if (expr instanceof Literal) return ((Literal) expr).value instanceof Double;
+		if (expr instanceof Grouping) return isNumeric(((Grouping) expr).expression);
+		if (expr instanceof Unary) return ((Unary) expr).operator.type() == TokenType.MINUS;
+		if (expr instanceof Binary) {
+			TokenType type = ((Binary) expr).operator.type();
+			return type == TokenType.MINUS || type == TokenType.STAR || type == TokenType.SLASH;
+		}
+		return false;
+	}
+
+	// evaluate a numeric expression, it reports the same runtime errors as evaluate().
+	private double evaluateNumber(Expr expr) {
+		if (expr instanceof Literal) return (double) ((Literal) expr).value;
+		if (expr instanceof Grouping) return evaluateNumber(((Grouping) expr).expression);
+
+		if (expr instanceof Unary) {
+			Unary unary = (Unary) expr;
+			if (isNumeric(unary.right)) return -evaluateNumber(unary.right);
+
+			Object right = evaluate(unary.right);
+			checkNumberOperand(unary.operator, right);
+			return -(double) right;
+		}
+
+		Binary binary = (Binary) expr;
+		if (!evaluateOperands(binary)) throw new RuntimeError(binary.operator, "Operands must be numbers.");
+		return arithmetic(binary.operator, leftNumber, rightNumber);
+	}
+
+	private double arithmetic(Token operator, double left, double right) {
+		return switch (operator.type()) {
+			case MINUS -> left - right;
+			case SLASH -> left / right;
+			default -> left * right;
+		};
+	}
+
+	private boolean compare(Token operator, double left, double right) {
+		return switch (operator.type()) {
+			case GREATER -> left > right;
+			case GREATER_EQUAL -> left >= right;
+			case LESS -> left < right;
+			default -> left <= right;
+		};
+	}
+
+	/*
+	* evaluate the condition of an if or a while statement. A comparison gives a primitive boolean directly,
+	* anything else is evaluated and then tested for truthiness.
+	* */
+	private boolean evaluateCondition(Expr condition) {
+		if (condition instanceof Binary) {
+			Binary binary = (Binary) condition;
+			switch (binary.operator.type()) {
+				case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL -> {
+					if (!evaluateOperands(binary)) {
+						throw new RuntimeError(binary.operator, "Operands must be numbers.");
+					}
+					return compare(binary.operator, leftNumber, rightNumber);
+				}
+			}
+		}
+		return isTruthy(evaluate(condition));
+	}
+
+	/*
+	* A call evaluates its arguments straight into the slots of the frame of the function, there is no list of
+	* arguments. The call site remembers the last declaration it called: the number of arguments is only checked
+	* when the declaration changes.
+	* A method call finds the method through the inline cache of its property and passes the instance in slot 0,
+	* so the method is never bound.
+	* */
+	@Override
+	public Object visitCallExpr(Expr.Call expr) {
+		if (!(expr.callee instanceof Expr.Get)) return call(expr, evaluate(expr.callee));
+
+		Expr.Get get = (Expr.Get) expr.callee;
+		LoxInstance instance = instance(get.object, get.name, "Only instances have properties.");
+		PropertyCache cache = cache(get);
+		int entry = cache.get(instance.shape, get.name.lexeme());
+		if (entry == -1) throw undefinedProperty(get.name);
+
+		// a field that holds a function is called like any other value.
+		int slot = cache.slots[entry];
+		if (slot != -1) return call(expr, instance.fields[slot]);
+		return call(expr, cache.methods[entry], instance);
+	}
+
+	private Object call(Expr.Call expr, Object callee) {
+		if (callee instanceof LoxFunction) {
+			LoxFunction function = (LoxFunction) callee;
+			return call(expr, function, function.receiver);
+		}
+
+		if (callee instanceof LoxClass) {
+			LoxClass klass = (LoxClass) callee;
+			LoxInstance instance = new LoxInstance(klass);
+			if (klass.initializer != null) {
+				call(expr, klass.initializer, instance);
+			} else {
+				evaluateArguments(expr);
+				if (!expr.arguments.isEmpty()) {
+					throw new RuntimeError(expr.paren, "Expected 0 arguments but got " + expr.arguments.size() + ".");
+				}
+			}
+			return instance;
+		}
+
+		evaluateArguments(expr);
+		throw new RuntimeError(expr.paren, "Can only call functions and classes.");
+	}
+
+	// the arguments of a call that fails still run, for their side effects.
+	private void evaluateArguments(Expr.Call expr) {
+		for (Expr argument : expr.arguments) {
+			evaluate(argument);
+		}
+	}
+
+	private Object call(Expr.Call expr, LoxFunction function, LoxInstance receiver) {
+		Stmt.Function declaration = function.declaration;
+		Environment frame = acquire(function.closure, declaration.slots, declaration.captured);
+		try {
+			int first = 0;
+			if (function.method) frame.defineAt(first++, receiver);
+
+			// every argument runs before the number of arguments is checked, the extra ones don't fit in the frame.
+			List<Expr> arguments = expr.arguments;
+			int arity = function.arity();
+			for (int i = 0; i < arguments.size(); i++) {
+				Object value = evaluate(arguments.get(i));
+				if (i < arity) frame.defineAt(first + i, value);
+			}
+			if (expr.checked != declaration) {
+				if (arguments.size() != arity) {
+					throw new RuntimeError(expr.paren,
+							"Expected " + arity + " arguments but got " + arguments.size() + ".");
+				}
+				expr.checked = declaration;
+			}
+
+			executeBlock(declaration.body, frame);
+		} finally {
+			release(frame, declaration.captured);
+		}
+
+		// the body ended with a return, or it ran till its end and the call is nil. An initializer returns its
+		// instance either way.
+		if (completion != RETURN) return function.initializer ? receiver : null;
+		completion = NORMAL;
+		Object value = returnValue;
+		returnValue = null;
+		return function.initializer ? receiver : value;
+	}
+
+	// the properties of an instance are found through the inline cache of the site, see PropertyCache.
+	@Override
+	public Object visitGetExpr(Expr.Get expr) {
+		LoxInstance instance = instance(expr.object, expr.name, "Only instances have properties.");
+		PropertyCache cache = cache(expr);
+		int entry = cache.get(instance.shape, expr.name.lexeme());
+		if (entry == -1) throw undefinedProperty(expr.name);
+
+		int slot = cache.slots[entry];
+		if (slot != -1) return instance.fields[slot];
+		return cache.methods[entry].bind(instance);
+	}
+
+	@Override
+	public Object visitSetExpr(Expr.Set expr) {
+		LoxInstance instance = instance(expr.object, expr.name, "Only instances have fields.");
+		Object value = evaluate(expr.value);
+
+		// the value is evaluated first, it can add fields to the instance and change its shape.
+		PropertyCache cache = cache(expr);
+		int entry = cache.set(instance.shape, expr.name.lexeme());
+		Shape next = cache.transitions[entry];
+		if (next != instance.shape) instance.grow(next);
+		instance.fields[cache.slots[entry]] = value;
+		return value;
+	}
+
+	// 'super' is in the scope the methods close over, 'this' is in slot 0 of the frame of the method, just inside it.
+	@Override
+	public Object visitSuperExpr(Expr.Super expr) {
+		LoxClass superclass = (LoxClass) environment.getAt(expr.depth, expr.slot);
+		LoxInstance instance = (LoxInstance) environment.getAt(expr.depth - 1, 0);
+		LoxFunction method = superclass.findMethod(expr.method.lexeme());
+		if (method == null) throw undefinedProperty(expr.method);
+		return method.bind(instance);
+	}
+
+	@Override
+	public Object visitThisExpr(Expr.This expr) {
+		return environment.getAt(expr.depth, expr.slot);
+	}
+
+	private LoxInstance instance(Expr object, Token name, String message) {
+		Object value = evaluate(object);
+		if (!(value instanceof LoxInstance)) throw new RuntimeError(name, message);
+		return (LoxInstance) value;
+	}
+
+	private static PropertyCache cache(Expr.Get expr) {
+		if (expr.cache == null) expr.cache = new PropertyCache();
+		return (PropertyCache) expr.cache;
+	}
+
+	private static PropertyCache cache(Expr.Set expr) {
+		if (expr.cache == null) expr.cache = new PropertyCache();
+		return (PropertyCache) expr.cache;
+	}
+
+	private static RuntimeError undefinedProperty(Token name) {
+		return new RuntimeError(name, "Undefined property '" + name.lexeme() + "'.");
 	}
 
 	@Override
@@ -141,14 +479,19 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
 	@Override
 	public Object visitUnaryExpr(Unary expr) {
-		// we evaluate the right operant first.
-		var right = evaluate(expr.right);
+		// the negation of a number is evaluated unboxed, like the other arithmetic operators.
+        if (expr.specialization == Specialization.NUMBER_NEGATE) return evaluateNumber(expr);
+
+        Object right = expr.operator.type() == TokenType.BANG ? evaluate(expr.right) : null;
+        if (expr.specialization == Specialization.BOOLEAN_NOT && right instanceof Boolean) return !(boolean) right;
+
+        // the node runs for the first time, or its operand changed type.
+        if (expr.specialization != Specialization.GENERIC) {
+            expr.specialization = Specialization.forUnary(expr.specialization, expr.operator.type(), right);
+        }
 
         return switch (expr.operator.type()) {
-            case MINUS -> {
-                checkNumberOperand(expr.operator, right);
-                yield -(double) right;
-            }
+            case MINUS -> evaluateNumber(expr);
             case BANG -> !isTruthy(right);
             default ->
                 // this code is unreachable.
@@ -159,7 +502,9 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
 	@Override
 	public Object visitVariableExpr(Expr.Variable expr) {
-		return environment.get(expr.name);
+		// globals are looked up by name, locals are read from the slot the resolver gave them.
+		if (expr.depth == -1) return globals.get(expr.name);
+		return environment.getAt(expr.depth, expr.slot);
 	}
 
 	// function to return a runtime error
@@ -173,8 +518,8 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return expr.accept(this);
 	}
 
-	// function to determine what values are truthy or falsely
-	private Boolean isTruthy(Object object) {
+	// function to determine what values are truthy or falsely, the rule of the language shared by all the engines.
+	public static boolean isTruthy(Object object) {
 		// if the value is null -> return false
 		if (object == null) return false;
 		// if the value is an instance of the Boolean class -> return the boolean value.
@@ -183,8 +528,8 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return true;
 	}
 
-	// function to check the equality of two values.
-	private Boolean isEqual(Object left, Object right) {
+	// function to check the equality of two values, shared by all the engines like isTruthy.
+	public static boolean isEqual(Object left, Object right) {
 //		if (left == right) return true;
 //		if (left == null | right == null) return false;
 //		return left.equals(right);
@@ -192,12 +537,98 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return Objects.equals(left, right);
 	}
 
+	// two numbers are equal the same way Double.equals() compares them (so NaN is equal to itself).
+	public static boolean isEqual(double left, double right) {
+		return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+	}
+
 	@Override
 	public Void visitBlockStmt(Stmt.Block stmt) {
-		executeBlock(stmt.statements, new Environment(environment));
+		// a block that the parser made out of a simple for loop runs as a counted loop.
+		if (stmt.countedLoop == CountedLoop.UNKNOWN) stmt.countedLoop = CountedLoop.analyze(stmt);
+		if (stmt.countedLoop == CountedLoop.COUNTED) {
+			Environment frame = acquire(environment, stmt.slots, stmt.captured);
+			try {
+				executeCountedLoop(stmt, frame);
+			} finally {
+				release(frame, stmt.captured);
+			}
+			return null;
+		}
+
+		// a block without declarations runs in the environment around it.
+		if (stmt.slots == 0) {
+			executeBlock(stmt.statements, environment);
+			return null;
+		}
+
+		Environment frame = acquire(environment, stmt.slots, stmt.captured);
+		try {
+			executeBlock(stmt.statements, frame);
+		} finally {
+			release(frame, stmt.captured);
+		}
 		return null;
 	}
 
+	// a frame that a function keeps as its closure is never recycled.
+	private Environment acquire(Environment enclosing, int slots, boolean captured) {
+		return captured ? new Environment(enclosing, slots) : frames.acquire(enclosing, slots);
+	}
+
+	private void release(Environment frame, boolean captured) {
+		if (!captured) frames.release(frame);
+	}
+
+	/*
+	* Run `for (var i = a; i < b; i = i + c) body` with the counter in a primitive double.
+	* The condition and the increment are not evaluated as expressions anymore, and the block that holds the body
+	* and the increment gets one environment for the whole loop instead of one per iteration (it declares nothing).
+	* The counter is still stored in its slot after each step, so the body reads it as usual.
+	* */
+	private void executeCountedLoop(Stmt.Block stmt, Environment frame) {
+		Stmt.Var counter = (Stmt.Var) stmt.statements.get(0);
+		Stmt.While loop = (Stmt.While) stmt.statements.get(1);
+		Binary condition = (Binary) loop.condition;
+		Stmt.Block inner = (Stmt.Block) loop.body;
+		Stmt body = inner.statements.get(0);
+		Binary increment = (Binary) ((Expr.Assign) ((Stmt.Expression) inner.statements.get(1)).expression).value;
+		double step = (double) ((Literal) increment.right).value;
+		if (increment.operator.type() == TokenType.MINUS) step = -step;
+
+		Environment previous = this.environment;
+		try {
+			this.environment = frame;
+			execute(counter);
+
+			// a counter that doesn't start as a number goes through the generic loop, which reports the error.
+			Object start = frame.getAt(0, counter.slot);
+			if (!(start instanceof Double)) {
+				execute(loop);
+				return;
+			}
+
+			// the block of the body and the increment declares nothing, so the body runs in the frame of the loop.
+			double value = (double) start;
+			for (;;) {
+				Object limit = evaluate(condition.right);
+				if (!(limit instanceof Double)) throw new RuntimeError(condition.operator, "Operands must be numbers.");
+				if (!compare(condition.operator, value, (double) limit)) break;
+
+				execute(body);
+				if (completion != NORMAL) {
+					if (completion == BREAK) completion = NORMAL;
+					break;
+				}
+
+				value += step;
+				frame.defineAt(counter.slot, value);
+			}
+		} finally {
+			this.environment = previous;
+		}
+	}
+
 	private void executeBlock(List<Stmt> statements, Environment environment) {
 		Environment previous = this.environment;	// the outer scope.
 		try {
@@ -205,6 +636,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
 			for (Stmt stmt : statements) {
 				execute(stmt);
+				if (completion != NORMAL) break;
 			}
 		} finally {
 			// we returned to the outer scope.
@@ -212,6 +644,12 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		}
 	}
 
+	@Override
+	public Void visitBreakStmt(Stmt.Break stmt) {
+		completion = BREAK;
+		return null;
+	}
+
 	@Override
 	public Void visitExpressionStmt(Stmt.Expression stmt) {
 		evaluate(stmt.expression);
@@ -220,8 +658,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
 	@Override
 	public Void visitIfStmt(Stmt.If stmt) {
-		Object condition = evaluate(stmt.condition);
-		if (isTruthy(condition)) {
+		if (evaluateCondition(stmt.condition)) {
 			execute(stmt.thenBranch);
 		} else if (stmt.elseBranch != null) {
 			execute(stmt.elseBranch);
@@ -229,6 +666,60 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	/*
+	* a lazy block is parsed the first time it runs, then it goes through the passes the parser output goes through
+	* before running. It's outside any scope, so it's resolved on its own.
+	* */
+	@Override
+	public Void visitLazyStmt(Stmt.Lazy stmt) {
+		if (stmt.block == null) {
+			Parser parser = new Parser(stmt.body);
+			List<Stmt> statements = parser.parse();
+			if (parser.errors() > 0) throw new SyntaxErrorInBlock();
+
+			Stmt.Block block = new Stmt.Block(new ConstantFolder().fold(statements));
+			new Resolver().resolve(List.of(block));
+			stmt.block = block;
+		}
+
+		execute(stmt.block);
+		return null;
+	}
+
+	@Override
+	public Void visitClassStmt(Stmt.Class stmt) {
+		LoxClass superclass = null;
+		Environment closure = environment;
+		if (stmt.superclass != null) {
+			Object value = evaluate(stmt.superclass);
+			if (!(value instanceof LoxClass)) throw new RuntimeError(stmt.superclass.name, "Superclass must be a class.");
+			superclass = (LoxClass) value;
+
+			// the methods close over a scope that holds the superclass, for 'super'.
+			closure = new Environment(environment, 1);
+			closure.defineAt(0, superclass);
+		}
+
+		Map<String, LoxFunction> methods = new HashMap<>();
+		for (Stmt.Function method : stmt.methods) {
+			String name = method.name.lexeme();
+			methods.put(name, new LoxFunction(method, closure, true, name.equals("init"), null));
+		}
+
+		LoxClass klass = new LoxClass(stmt.name.lexeme(), superclass, methods);
+		if (stmt.slot == -1) globals.define(stmt.name, klass);
+		else environment.defineAt(stmt.slot, klass);
+		return null;
+	}
+
+	@Override
+	public Void visitFunctionStmt(Stmt.Function stmt) {
+		LoxFunction function = new LoxFunction(stmt, environment);
+		if (stmt.slot == -1) globals.define(stmt.name, function);
+		else environment.defineAt(stmt.slot, function);
+		return null;
+	}
+
 	@Override
 	public Void visitPrintStmt(Stmt.Print stmt) {
 		Object evaluated = evaluate(stmt.expression);
@@ -236,6 +727,13 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	@Override
+	public Void visitReturnStmt(Stmt.Return stmt) {
+		returnValue = stmt.value != null ? evaluate(stmt.value) : null;
+		completion = RETURN;
+		return null;
+	}
+
 	@Override
 	public Void visitVarStmt(Stmt.Var stmt) {
 		Object value = null;
@@ -243,14 +741,22 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 			value = evaluate(stmt.initializer);
 		}
 
-		environment.define(stmt.name.lexeme, value);
+		if (stmt.slot == -1) {
+			globals.define(stmt.name, value);
+		} else {
+			environment.defineAt(stmt.slot, value);
+		}
 		return null;
 	}
 
 	@Override
 	public Void visitWhileStmt(Stmt.While stmt) {
-		while (isTruthy(evaluate(stmt.condition))) {
+		while (evaluateCondition(stmt.condition)) {
 			execute(stmt.body);
+			if (completion != NORMAL) {
+				if (completion == BREAK) completion = NORMAL;
+				break;
+			}
 		}
 		return null;
 	}
@@ -0,0 +1,41 @@
+package evaluate;
+
+import java.util.Map;
+
+/*
+* a class value: its methods, its superclass and the empty shape its instances start with. Calling a class makes
+* an instance and runs its init method on it.
+* */
+public final class LoxClass {
+    final String name;
+    final LoxClass superclass;
+    private final Map<String, LoxFunction> methods;
+    final LoxFunction initializer;  // the init method, null when the class (and its superclasses) has none.
+    final Shape shape = new Shape(this);
+    int fields = 0;     // the most fields an instance got so far, new instances start with that many slots.
+
+    LoxClass(String name, LoxClass superclass, Map<String, LoxFunction> methods) {
+        this.name = name;
+        this.superclass = superclass;
+        this.methods = methods;
+        this.initializer = findMethod("init");
+    }
+
+    // the method with this name in the class or its superclasses, null when there is none.
+    LoxFunction findMethod(String name) {
+        for (LoxClass klass = this; klass != null; klass = klass.superclass) {
+            LoxFunction method = klass.methods.get(name);
+            if (method != null) return method;
+        }
+        return null;
+    }
+
+    public int arity() {
+        return initializer == null ? 0 : initializer.arity();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
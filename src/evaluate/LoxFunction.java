@@ -0,0 +1,44 @@
+package evaluate;
+
+import ast.Stmt;
+import environment.Environment;
+
+/*
+* a function value: its declaration and the environment it was declared in. A call runs the body in a new frame
+* whose enclosing environment is that closure, with the arguments in the first slots.
+* A method has the instance in slot 0 of its frame and the arguments after it. A method read as a property is
+* bound to its instance, a method call passes the instance without binding the method.
+* */
+public final class LoxFunction {
+    final Stmt.Function declaration;
+    final Environment closure;
+    final boolean method;
+    final boolean initializer;  // an init method, a call returns the instance.
+    final LoxInstance receiver; // the instance a bound method runs on, null otherwise.
+
+    LoxFunction(Stmt.Function declaration, Environment closure) {
+        this(declaration, closure, false, false, null);
+    }
+
+    LoxFunction(Stmt.Function declaration, Environment closure, boolean method, boolean initializer,
+                LoxInstance receiver) {
+        this.declaration = declaration;
+        this.closure = closure;
+        this.method = method;
+        this.initializer = initializer;
+        this.receiver = receiver;
+    }
+
+    LoxFunction bind(LoxInstance instance) {
+        return new LoxFunction(declaration, closure, true, initializer, instance);
+    }
+
+    public int arity() {
+        return declaration.params.size();
+    }
+
+    @Override
+    public String toString() {
+        return "<fn " + declaration.name.lexeme() + ">";
+    }
+}
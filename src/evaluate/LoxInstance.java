@@ -0,0 +1,29 @@
+package evaluate;
+
+import java.util.Arrays;
+
+/*
+* an instance of a class: its fields live in an array, the shape tells which slot holds which field. There is no
+* map per instance.
+* */
+public final class LoxInstance {
+    Shape shape;
+    Object[] fields;
+
+    LoxInstance(LoxClass klass) {
+        this.shape = klass.shape;
+        this.fields = new Object[klass.fields];
+    }
+
+    // move to a shape with one more field, the array grows when it's full.
+    void grow(Shape next) {
+        if (next.size > fields.length) fields = Arrays.copyOf(fields, Math.max(next.size, fields.length * 2));
+        if (next.size > next.klass.fields) next.klass.fields = next.size;
+        shape = next;
+    }
+
+    @Override
+    public String toString() {
+        return shape.klass.name + " instance";
+    }
+}
@@ -0,0 +1,52 @@
+package evaluate;
+
+/*
+* the inline cache of a site that reads or sets a property (a get, a set or a method call): the shapes it has seen,
+* and where the property is for each one. A site that sees one shape is monomorphic, it hits the first entry. A
+* site that sees a few shapes (subclasses, fields added in another order) is polymorphic and scans its entries.
+* Past MAX_SHAPES shapes the site is megamorphic: each miss replaces the last entry.
+* */
+final class PropertyCache {
+    private static final int MAX_SHAPES = 4;
+    final Shape[] shapes = new Shape[MAX_SHAPES];
+    final int[] slots = new int[MAX_SHAPES];    // the slot of the field, -1 when the property is a method.
+    final LoxFunction[] methods = new LoxFunction[MAX_SHAPES];
+    final Shape[] transitions = new Shape[MAX_SHAPES];  // the shape of the instance once a set is done.
+    private int size = 0;
+
+    // the entry to read the property of an instance of this shape, -1 when it has no such field or method.
+    int get(Shape shape, String name) {
+        for (int i = 0; i < size; i++) {
+            if (shapes[i] == shape) return i;
+        }
+
+        // a field hides a method with the same name.
+        int slot = shape.slot(name);
+        LoxFunction method = null;
+        if (slot == -1) {
+            method = shape.klass.findMethod(name);
+            if (method == null) return -1;
+        }
+        return add(shape, slot, method, shape);
+    }
+
+    // the entry to set the field of an instance of this shape, the field is added when the shape doesn't have it.
+    int set(Shape shape, String name) {
+        for (int i = 0; i < size; i++) {
+            if (shapes[i] == shape) return i;
+        }
+
+        int slot = shape.slot(name);
+        if (slot != -1) return add(shape, slot, null, shape);
+        return add(shape, shape.size, null, shape.with(name));
+    }
+
+    private int add(Shape shape, int slot, LoxFunction method, Shape transition) {
+        int entry = size < MAX_SHAPES ? size++ : MAX_SHAPES - 1;
+        shapes[entry] = shape;
+        slots[entry] = slot;
+        methods[entry] = method;
+        transitions[entry] = transition;
+        return entry;
+    }
+}
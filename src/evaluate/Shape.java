@@ -0,0 +1,48 @@
+package evaluate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+* the hidden class of an instance: the names of its fields and the slot of each one in the field array of the
+* instance. Instances of a class that get the same fields in the same order share their shape, so an access site
+* can remember the shape it saw and the slot it found there, and skip the lookup by name the next time.
+* Adding a field moves the instance to the shape with one more field. The transitions are kept, so the shapes of a
+* class form a tree rooted at its empty shape and identical instances always end up in the same shape.
+* */
+final class Shape {
+    final LoxClass klass;
+    final int size;     // the number of fields, the next field takes this slot.
+    private final Map<String, Integer> slots;
+    private Map<String, Shape> transitions;     // the shapes with one more field, made on demand.
+
+    // the empty shape of a new instance of the class.
+    Shape(LoxClass klass) {
+        this(klass, new HashMap<>());
+    }
+
+    private Shape(LoxClass klass, Map<String, Integer> slots) {
+        this.klass = klass;
+        this.slots = slots;
+        this.size = slots.size();
+    }
+
+    // the slot of the field, -1 when the shape has no such field.
+    int slot(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    // the shape after adding the field.
+    Shape with(String name) {
+        if (transitions == null) transitions = new HashMap<>();
+        Shape next = transitions.get(name);
+        if (next == null) {
+            Map<String, Integer> nextSlots = new HashMap<>(slots);
+            nextSlots.put(name, size);
+            next = new Shape(klass, nextSlots);
+            transitions.put(name, next);
+        }
+        return next;
+    }
+}
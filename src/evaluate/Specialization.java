@@ -0,0 +1,70 @@
+package evaluate;
+
+import scanner.TokenType;
+
+/*
+* The states of the self-specializing Binary and Unary nodes.
+*
+* A node starts UNINITIALIZED. The first time it runs, the interpreter looks at the types of its operands and
+* rewrites the node into a specialized variant (adding two numbers, concatenating two strings, ...).
+* A specialized node only checks that its operands still have those types. When the check fails, the node
+* falls back to GENERIC and stays there, so a node that sees many types doesn't keep flipping.
+* */
+public final class Specialization {
+    public static final int UNINITIALIZED = 0;
+    public static final int GENERIC = 1;
+
+    // binary nodes.
+    public static final int NUMBER_ADD = 2;
+    public static final int NUMBER_SUBTRACT = 3;
+    public static final int NUMBER_MULTIPLY = 4;
+    public static final int NUMBER_DIVIDE = 5;
+    public static final int NUMBER_GREATER = 6;
+    public static final int NUMBER_GREATER_EQUAL = 7;
+    public static final int NUMBER_LESS = 8;
+    public static final int NUMBER_LESS_EQUAL = 9;
+    public static final int NUMBER_EQUAL = 10;
+    public static final int NUMBER_NOT_EQUAL = 11;
+    public static final int STRING_CONCAT = 12;
+
+    // unary nodes.
+    public static final int NUMBER_NEGATE = 13;
+    public static final int BOOLEAN_NOT = 14;
+
+    private Specialization() {}
+
+    // choose the next state of a binary node, after it evaluated its operands.
+    static int forBinary(int current, TokenType operator, boolean numbers, Object left, Object right) {
+        // the operands don't have the types the node was specialized for anymore.
+        if (current != UNINITIALIZED) return GENERIC;
+
+        if (numbers) {
+            return switch (operator) {
+                case PLUS -> NUMBER_ADD;
+                case MINUS -> NUMBER_SUBTRACT;
+                case STAR -> NUMBER_MULTIPLY;
+                case SLASH -> NUMBER_DIVIDE;
+                case GREATER -> NUMBER_GREATER;
+                case GREATER_EQUAL -> NUMBER_GREATER_EQUAL;
+                case LESS -> NUMBER_LESS;
+                case LESS_EQUAL -> NUMBER_LESS_EQUAL;
+                case EQUAL_EQUAL -> NUMBER_EQUAL;
+                case BANG_EQUAL -> NUMBER_NOT_EQUAL;
+                default -> GENERIC;
+            };
+        }
+
+        if (operator == TokenType.PLUS && left instanceof String && right instanceof String) return STRING_CONCAT;
+        return GENERIC;
+    }
+
+    // choose the next state of a unary node, after it evaluated its operand.
+    static int forUnary(int current, TokenType operator, Object right) {
+        if (current != UNINITIALIZED) return GENERIC;
+
+        // a negation always produces a number (or fails), so it's specialized from the start.
+        if (operator == TokenType.MINUS) return NUMBER_NEGATE;
+        if (right instanceof Boolean) return BOOLEAN_NOT;
+        return GENERIC;
+    }
+}
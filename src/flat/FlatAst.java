@@ -0,0 +1,95 @@
+package flat;
+
+import scanner.Token;
+
+import java.util.Arrays;
+
+/*
+* The flat ast keeps all the nodes of a program in one int array instead of one object per node. A node takes
+* STRIDE ints: its kind and up to three operands, which are other nodes (their offset in the array), slots,
+* depths, or indexes in the side tables. The statements of the blocks are lists of nodes in a second int array,
+* the tokens (needed for the error messages and the global names) and the literal values are in side tables.
+*
+* A node is referenced by its offset in the nodes array, NONE stands for a missing node.
+* */
+public final class FlatAst {
+    static final int STRIDE = 4;
+    static final int NONE = -1;
+
+    // statements.
+    static final int BLOCK = 0;         // list start, count, slots.
+    static final int EXPRESSION = 1;    // expression.
+    static final int IF = 2;            // condition, then branch, else branch.
+    static final int PRINT = 3;         // expression.
+    static final int VAR_GLOBAL = 4;    // name token, initializer.
+    static final int VAR_LOCAL = 5;     // slot, initializer.
+    static final int WHILE = 6;         // condition, body.
+    static final int BREAK = 7;
+
+    // expressions.
+    static final int LITERAL = 10;      // constant.
+    static final int GET_GLOBAL = 11;   // name token.
+    static final int GET_LOCAL = 12;    // depth, slot.
+    static final int SET_GLOBAL = 13;   // name token, value.
+    static final int SET_LOCAL = 14;    // depth, slot, value.
+    static final int AND = 15;          // left, right.
+    static final int OR = 16;           // left, right.
+    static final int NOT = 17;          // operand.
+    static final int NEGATE = 18;       // operand, operator token.
+
+    // binary operators: left, right, operator token.
+    static final int ADD = 20;
+    static final int SUBTRACT = 21;
+    static final int MULTIPLY = 22;
+    static final int DIVIDE = 23;
+    static final int GREATER = 24;
+    static final int GREATER_EQUAL = 25;
+    static final int LESS = 26;
+    static final int LESS_EQUAL = 27;
+    static final int EQUAL = 28;
+    static final int NOT_EQUAL = 29;
+
+    int[] nodes = new int[1024];
+    int nodeCount = 0;  // the number of ints used in nodes.
+    int[] lists = new int[256];
+    int listCount = 0;
+    Token[] tokens = new Token[256];
+    int tokenCount = 0;
+    Object[] constants = new Object[256];
+    int constantCount = 0;
+
+    int program;    // the list of the top level statements.
+    int programSize;
+
+    int node(int kind, int a, int b, int c) {
+        if (nodeCount + STRIDE > nodes.length) nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        int node = nodeCount;
+        nodes[node] = kind;
+        nodes[node + 1] = a;
+        nodes[node + 2] = b;
+        nodes[node + 3] = c;
+        nodeCount += STRIDE;
+        return node;
+    }
+
+    // the nodes of a list are stored next to each other, the list is referenced by its first index.
+    int list(int[] elements, int size) {
+        if (listCount + size > lists.length) lists = Arrays.copyOf(lists, Math.max(lists.length * 2, listCount + size));
+        int start = listCount;
+        System.arraycopy(elements, 0, lists, start, size);
+        listCount += size;
+        return start;
+    }
+
+    int token(Token token) {
+        if (tokenCount == tokens.length) tokens = Arrays.copyOf(tokens, tokens.length * 2);
+        tokens[tokenCount] = token;
+        return tokenCount++;
+    }
+
+    int constant(Object value) {
+        if (constantCount == constants.length) constants = Arrays.copyOf(constants, constants.length * 2);
+        constants[constantCount] = value;
+        return constantCount++;
+    }
+}
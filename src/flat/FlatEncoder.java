@@ -0,0 +1,187 @@
+package flat;
+
+import ast.Expr;
+import ast.Stmt;
+import scanner.TokenType;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static flat.FlatAst.*;
+
+/*
+* the flat encoder turns the resolved ast into a FlatAst. A node is added after its children, so it only refers to
+* nodes that are already there. Groupings are not kept, they only changed how the parser read the expression.
+* A program with functions can't be encoded, the encoder throws Unsupported.
+* */
+class FlatEncoder implements Expr.Visitor<Integer>, Stmt.Visitor<Integer> {
+    static class Unsupported extends RuntimeException {
+        Unsupported(String message) {
+            super(message);
+        }
+    }
+
+    private final FlatAst ast = new FlatAst();
+
+    FlatAst encode(List<Stmt> statements) {
+        int[] list = encodeAll(statements);
+        ast.program = ast.list(list, list.length);
+        ast.programSize = list.length;
+        return ast;
+    }
+
+    // the statements that the parser couldn't build (null) are left out.
+    private int[] encodeAll(List<Stmt> statements) {
+        int[] list = new int[statements.size()];
+        int size = 0;
+        for (Stmt statement : statements) {
+            if (statement != null) list[size++] = statement.accept(this);
+        }
+        return size == list.length ? list : Arrays.copyOf(list, size);
+    }
+
+    private int encode(Stmt stmt) {
+        return stmt == null ? NONE : stmt.accept(this);
+    }
+
+    private int encode(Expr expr) {
+        return expr == null ? NONE : expr.accept(this);
+    }
+
+    @Override
+    public Integer visitBlockStmt(Stmt.Block stmt) {
+        int[] list = encodeAll(stmt.statements);
+        return ast.node(BLOCK, ast.list(list, list.length), list.length, stmt.slots);
+    }
+
+    @Override
+    public Integer visitBreakStmt(Stmt.Break stmt) {
+        return ast.node(BREAK, 0, 0, 0);
+    }
+
+    @Override
+    public Integer visitExpressionStmt(Stmt.Expression stmt) {
+        return ast.node(EXPRESSION, encode(stmt.expression), 0, 0);
+    }
+
+    @Override
+    public Integer visitClassStmt(Stmt.Class stmt) {
+        throw new Unsupported("class");
+    }
+
+    @Override
+    public Integer visitFunctionStmt(Stmt.Function stmt) {
+        throw new Unsupported("function");
+    }
+
+    @Override
+    public Integer visitIfStmt(Stmt.If stmt) {
+        return ast.node(IF, encode(stmt.condition), encode(stmt.thenBranch), encode(stmt.elseBranch));
+    }
+
+    @Override
+    public Integer visitLazyStmt(Stmt.Lazy stmt) {
+        throw new IllegalStateException("A lazy block can only run in the interpreter.");
+    }
+
+    @Override
+    public Integer visitPrintStmt(Stmt.Print stmt) {
+        return ast.node(PRINT, encode(stmt.expression), 0, 0);
+    }
+
+    @Override
+    public Integer visitReturnStmt(Stmt.Return stmt) {
+        throw new Unsupported("return");
+    }
+
+    @Override
+    public Integer visitVarStmt(Stmt.Var stmt) {
+        int initializer = encode(stmt.initializer);
+        if (stmt.slot == -1) return ast.node(VAR_GLOBAL, ast.token(stmt.name), initializer, 0);
+        return ast.node(VAR_LOCAL, stmt.slot, initializer, 0);
+    }
+
+    @Override
+    public Integer visitWhileStmt(Stmt.While stmt) {
+        return ast.node(WHILE, encode(stmt.condition), encode(stmt.body), 0);
+    }
+
+    @Override
+    public Integer visitCallExpr(Expr.Call expr) {
+        throw new Unsupported("call");
+    }
+
+    @Override
+    public Integer visitGetExpr(Expr.Get expr) {
+        throw new Unsupported("property");
+    }
+
+    @Override
+    public Integer visitSetExpr(Expr.Set expr) {
+        throw new Unsupported("property");
+    }
+
+    @Override
+    public Integer visitSuperExpr(Expr.Super expr) {
+        throw new Unsupported("super");
+    }
+
+    @Override
+    public Integer visitThisExpr(Expr.This expr) {
+        throw new Unsupported("this");
+    }
+
+    @Override
+    public Integer visitAssignExpr(Expr.Assign expr) {
+        int value = encode(expr.value);
+        if (expr.depth == -1) return ast.node(SET_GLOBAL, ast.token(expr.name), value, 0);
+        return ast.node(SET_LOCAL, expr.depth, expr.slot, value);
+    }
+
+    @Override
+    public Integer visitBinaryExpr(Expr.Binary expr) {
+        int kind = switch (expr.operator.type()) {
+            case PLUS -> ADD;
+            case MINUS -> SUBTRACT;
+            case STAR -> MULTIPLY;
+            case SLASH -> DIVIDE;
+            case GREATER -> GREATER;
+            case GREATER_EQUAL -> GREATER_EQUAL;
+            case LESS -> LESS;
+            case LESS_EQUAL -> LESS_EQUAL;
+            case EQUAL_EQUAL -> EQUAL;
+            case BANG_EQUAL -> NOT_EQUAL;
+            default -> throw new IllegalStateException("Unknown binary operator " + expr.operator + ".");
+        };
+        return ast.node(kind, encode(expr.left), encode(expr.right), ast.token(expr.operator));
+    }
+
+    @Override
+    public Integer visitGroupingExpr(Expr.Grouping expr) {
+        return encode(expr.expression);
+    }
+
+    @Override
+    public Integer visitLiteralExpr(Expr.Literal expr) {
+        return ast.node(LITERAL, ast.constant(expr.value), 0, 0);
+    }
+
+    @Override
+    public Integer visitLogicalExpr(Expr.Logical expr) {
+        int kind = expr.operator.type() == TokenType.OR ? OR : AND;
+        return ast.node(kind, encode(expr.left), encode(expr.right), 0);
+    }
+
+    @Override
+    public Integer visitUnaryExpr(Expr.Unary expr) {
+        int right = encode(expr.right);
+        if (expr.operator.type() == TokenType.BANG) return ast.node(NOT, right, 0, 0);
+        return ast.node(NEGATE, right, ast.token(expr.operator), 0);
+    }
+
+    @Override
+    public Integer visitVariableExpr(Expr.Variable expr) {
+        if (expr.depth == -1) return ast.node(GET_GLOBAL, ast.token(expr.name), 0, 0);
+        return ast.node(GET_LOCAL, expr.depth, expr.slot, 0);
+    }
+}
@@ -0,0 +1,192 @@
+package flat;
+
+import ast.Stmt;
+import environment.Environment;
+import environment.FramePool;
+import evaluate.Interpreter;
+import evaluate.RuntimeError;
+import lox.Main;
+import scanner.Token;
+
+import java.util.List;
+
+import static evaluate.Interpreter.isEqual;
+import static evaluate.Interpreter.isTruthy;
+import static flat.FlatAst.*;
+
+/*
+* an execution engine that encodes the resolved statements into a FlatAst and walks the arrays directly.
+* A node is read as a few ints next to each other instead of a field of an object somewhere in the heap, and the
+* kind of the node is dispatched with a switch instead of a virtual call.
+* When the program can't be encoded, it's run by the tree-walking interpreter instead. Both share the same
+* global environment, so the REPL can go from one to the other.
+* */
+public class FlatInterpreter {
+    private final Interpreter fallback = new Interpreter();
+    private final Environment globals = fallback.globals();
+    private final FramePool frames = new FramePool();
+    private Environment environment = globals;
+    private boolean breaking = false;   // a break ran, the statements are skipped until the end of its loop.
+
+    // the arrays of the program that runs, copied in fields so they are not read through the FlatAst every time.
+    private int[] nodes;
+    private int[] lists;
+    private Token[] tokens;
+    private Object[] constants;
+
+    public void interpret(List<Stmt> statements) {
+        FlatAst ast;
+        try {
+            ast = new FlatEncoder().encode(statements);
+        } catch (FlatEncoder.Unsupported unsupported) {
+            fallback.interpret(statements);
+            return;
+        }
+        nodes = ast.nodes;
+        lists = ast.lists;
+        tokens = ast.tokens;
+        constants = ast.constants;
+        environment = globals;
+        try {
+            executeList(ast.program, ast.programSize);
+        } catch (RuntimeError re) {
+            Main.runtimeError(re);
+        }
+    }
+
+    private void executeList(int start, int count) {
+        for (int i = start; i < start + count && !breaking; i++) {
+            execute(lists[i]);
+        }
+    }
+
+    private void execute(int node) {
+        if (node == NONE) return;
+
+        int[] nodes = this.nodes;
+        switch (nodes[node]) {
+            case BLOCK -> {
+                // a block without declarations runs in the environment around it.
+                int slots = nodes[node + 3];
+                if (slots == 0) {
+                    executeList(nodes[node + 1], nodes[node + 2]);
+                    return;
+                }
+                Environment previous = environment;
+                Environment frame = frames.acquire(previous, slots);
+                try {
+                    environment = frame;
+                    executeList(nodes[node + 1], nodes[node + 2]);
+                } finally {
+                    environment = previous;
+                    frames.release(frame);
+                }
+            }
+            case EXPRESSION -> evaluate(nodes[node + 1]);
+            case IF -> {
+                if (isTruthy(evaluate(nodes[node + 1]))) execute(nodes[node + 2]);
+                else execute(nodes[node + 3]);
+            }
+            case PRINT -> System.out.println(Interpreter.stringify(evaluate(nodes[node + 1])));
+            case VAR_GLOBAL -> {
+                int initializer = nodes[node + 2];
+                globals.define(tokens[nodes[node + 1]], initializer == NONE ? null : evaluate(initializer));
+            }
+            case VAR_LOCAL -> {
+                int initializer = nodes[node + 2];
+                environment.defineAt(nodes[node + 1], initializer == NONE ? null : evaluate(initializer));
+            }
+            case WHILE -> {
+                int condition = nodes[node + 1];
+                int body = nodes[node + 2];
+                while (isTruthy(evaluate(condition))) {
+                    execute(body);
+                    if (breaking) {
+                        breaking = false;
+                        break;
+                    }
+                }
+            }
+            case BREAK -> breaking = true;
+            default -> throw new IllegalStateException("Unknown statement kind " + nodes[node] + ".");
+        }
+    }
+
+    private Object evaluate(int node) {
+        int[] nodes = this.nodes;
+        switch (nodes[node]) {
+            case LITERAL:
+                return constants[nodes[node + 1]];
+            case GET_GLOBAL:
+                return globals.get(tokens[nodes[node + 1]]);
+            case GET_LOCAL:
+                return environment.getAt(nodes[node + 1], nodes[node + 2]);
+            case SET_GLOBAL: {
+                Object value = evaluate(nodes[node + 2]);
+                globals.assign(tokens[nodes[node + 1]], value);
+                return value;
+            }
+            case SET_LOCAL: {
+                Object value = evaluate(nodes[node + 3]);
+                environment.assignAt(nodes[node + 1], nodes[node + 2], value);
+                return value;
+            }
+            case AND: {
+                Object left = evaluate(nodes[node + 1]);
+                if (!isTruthy(left)) return left;
+                return evaluate(nodes[node + 2]);
+            }
+            case OR: {
+                Object left = evaluate(nodes[node + 1]);
+                if (isTruthy(left)) return left;
+                return evaluate(nodes[node + 2]);
+            }
+            case NOT:
+                return !isTruthy(evaluate(nodes[node + 1]));
+            case NEGATE: {
+                Object right = evaluate(nodes[node + 1]);
+                if (!(right instanceof Double)) throw new RuntimeError(tokens[nodes[node + 2]], "Operand must be number.");
+                return -(double) right;
+            }
+        }
+        return binary(node, nodes[node], evaluate(nodes[node + 1]), evaluate(nodes[node + 2]));
+    }
+
+    private Object binary(int node, int kind, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) {
+            double a = (double) left;
+            double b = (double) right;
+            switch (kind) {
+                case ADD: return a + b;
+                case SUBTRACT: return a - b;
+                case MULTIPLY: return a * b;
+                case DIVIDE: return a / b;
+                case GREATER: return a > b;
+                case GREATER_EQUAL: return a >= b;
+                case LESS: return a < b;
+                case LESS_EQUAL: return a <= b;
+            }
+        }
+
+        switch (kind) {
+            case EQUAL:
+                return isEqual(left, right);
+            case NOT_EQUAL:
+                return !isEqual(left, right);
+            case ADD:
+                // concatenating two strings, or a string and a number.
+                if (left instanceof String && (right instanceof String || right instanceof Double)) return left + "" + right;
+                if (left instanceof Double && right instanceof String) return left + (String) right;
+                throw new RuntimeError(tokens[nodes[node + 3]], "Operands must be two numbers or strings.");
+            case SUBTRACT:
+            case MULTIPLY:
+            case DIVIDE:
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+                throw new RuntimeError(tokens[nodes[node + 3]], "Operands must be numbers.");
+        }
+        throw new IllegalStateException("Unknown expression kind " + kind + ".");
+    }
+}
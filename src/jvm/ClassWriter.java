@@ -0,0 +1,165 @@
+package jvm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+* a minimal writer for JVM class files: a constant pool, static methods with a Code attribute, nothing else.
+*
+* The classes are written with the version 49 (Java 5) of the format, so the JVM verifies them by type inference
+* and we don't have to compute stack map frames.
+* */
+class ClassWriter {
+    private static final int MAJOR_VERSION = 49;
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    // a method that has been assembled, waiting to be written in the class file.
+    private record Method(int access, int name, int descriptor, byte[] code, int maxStack, int maxLocals) {}
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;  // the index 0 of the constant pool is never used.
+    private final List<Method> methods = new ArrayList<>();
+
+    int utf8(String value) {
+        return constant("Utf8:" + value, 1, () -> {
+            // the string is encoded first, so a string too long for the class file doesn't leave half an entry.
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            try {
+                new DataOutputStream(encoded).writeUTF(value);
+            } catch (UTFDataFormatException e) {
+                throw new JvmCompiler.Unsupported("String constant too long.");
+            }
+            poolOut.writeByte(1);
+            encoded.writeTo(poolOut);
+        });
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return constant("Class:" + internalName, 1, () -> {
+            poolOut.writeByte(7);
+            poolOut.writeShort(name);
+        });
+    }
+
+    int integer(int value) {
+        return constant("Integer:" + value, 1, () -> {
+            poolOut.writeByte(3);
+            poolOut.writeInt(value);
+        });
+    }
+
+    // a double takes two entries of the constant pool.
+    int doubleConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        return constant("Double:" + bits, 2, () -> {
+            poolOut.writeByte(6);
+            poolOut.writeLong(bits);
+        });
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        return constant("Method:" + owner + "." + name + descriptor, 1, () -> {
+            poolOut.writeByte(10);
+            poolOut.writeShort(ownerIndex);
+            poolOut.writeShort(nameAndType);
+        });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return constant("NameAndType:" + name + ":" + descriptor, 1, () -> {
+            poolOut.writeByte(12);
+            poolOut.writeShort(nameIndex);
+            poolOut.writeShort(descriptorIndex);
+        });
+    }
+
+    private interface Entry {
+        void write() throws IOException;
+    }
+
+    // add an entry to the constant pool, unless an equal entry is already there.
+    private int constant(String key, int size, Entry entry) {
+        Integer index = poolIndex.get(key);
+        if (index != null) return index;
+
+        if (poolCount + size > 0xffff) throw new JvmCompiler.Unsupported("Too many constants in one class.");
+
+        try {
+            entry.write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        poolIndex.put(key, poolCount);
+        poolCount += size;
+        return poolCount - size;
+    }
+
+    void addMethod(int access, String name, String descriptor, byte[] code, int maxStack, int maxLocals) {
+        if (code.length > 0xffff) throw new JvmCompiler.Unsupported("Method too large.");
+        methods.add(new Method(access, utf8(name), utf8(descriptor), code, maxStack, maxLocals));
+    }
+
+    byte[] toByteArray(String internalName) {
+        int thisClass = classRef(internalName);
+        int superClass = classRef("java/lang/Object");
+        int codeAttribute = utf8("Code");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+
+            poolOut.flush();
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);  // interfaces.
+            out.writeShort(0);  // fields.
+
+            out.writeShort(methods.size());
+            for (Method method : methods) {
+                out.writeShort(method.access());
+                out.writeShort(method.name());
+                out.writeShort(method.descriptor());
+                out.writeShort(1);  // one attribute: the code.
+
+                out.writeShort(codeAttribute);
+                out.writeInt(12 + method.code().length);
+                out.writeShort(method.maxStack());
+                out.writeShort(method.maxLocals());
+                out.writeInt(method.code().length);
+                out.write(method.code());
+                out.writeShort(0);  // exception table.
+                out.writeShort(0);  // attributes of the code.
+            }
+
+            out.writeShort(0);  // attributes of the class.
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
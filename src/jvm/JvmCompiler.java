@@ -0,0 +1,573 @@
+package jvm;
+
+import ast.Expr;
+import ast.Stmt;
+import scanner.Token;
+import scanner.TokenType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static jvm.MethodWriter.*;
+
+/*
+* the jvm compiler translates the resolved statements into a JVM class, so HotSpot can compile Lox code like Java.
+*
+* Every top level statement becomes a static method. The local variables of the blocks become JVM local variables,
+* the globals stay in the global environment and are looked up by name. Numbers are kept as primitive doubles on
+* the JVM stack as long as possible, and the operations that need more than one instruction call LoxRuntime.
+*
+* The generated methods take the global environment and the array of constants (tokens for the runtime errors,
+* strings and numbers for the literals) as parameters.
+* When the program doesn't fit the limits of a class file, the compiler throws Unsupported.
+* */
+public class JvmCompiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    public static class Unsupported extends RuntimeException {
+        public Unsupported(String message) {
+            super(message);
+        }
+    }
+
+    // the compiled program: the bytes of the class file and the constants its methods expect.
+    public record Program(byte[] classFile, Object[] constants) {}
+
+    static final String CLASS_NAME = "jvm/LoxProgram";
+    static final String RUN_DESCRIPTOR = "(Lenvironment/Environment;[Ljava/lang/Object;)V";
+    private static final String RUNTIME = "jvm/LoxRuntime";
+    private static final String INTERPRETER = "evaluate/Interpreter";   // the truthiness and equality rules.
+    private static final String TOKEN = "scanner/Token";
+    private static final int GLOBALS = 0;   // the local variable that holds the global environment.
+    private static final int CONSTANTS = 1; // the local variable that holds the constants.
+    private static final int CALLS_PER_METHOD = 1000;
+
+    private final ClassWriter classWriter = new ClassWriter();
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+
+    // the state of the method being compiled.
+    private MethodWriter method;
+    private final List<Integer> scopes = new ArrayList<>();    // the first JVM local of each enclosing block.
+    private final List<MethodWriter.Label> loopEnds = new ArrayList<>();   // where the breaks of each loop jump.
+    private int nextLocal;
+    private int maxLocals;
+
+    public Program compile(List<Stmt> statements) {
+        List<String> methods = new ArrayList<>();
+        for (Stmt statement : statements) {
+            String name = "statement" + methods.size();
+            compileMethod(name, statement);
+            methods.add(name);
+        }
+
+        // the run method calls the statements in order, through batches so no method gets too large.
+        while (methods.size() > CALLS_PER_METHOD) {
+            List<String> batches = new ArrayList<>();
+            for (int i = 0; i < methods.size(); i += CALLS_PER_METHOD) {
+                String name = "batch" + batches.size() + "_" + methods.size();
+                compileCalls(name, methods.subList(i, Math.min(i + CALLS_PER_METHOD, methods.size())));
+                batches.add(name);
+            }
+            methods = batches;
+        }
+        compileCalls("run", methods);
+
+        return new Program(classWriter.toByteArray(CLASS_NAME), constants.toArray());
+    }
+
+    private void compileMethod(String name, Stmt statement) {
+        method = new MethodWriter(classWriter);
+        nextLocal = 2;
+        maxLocals = 2;
+
+        compile(statement);
+        method.op(RETURN, 0);
+        addMethod(name);
+    }
+
+    private void compileCalls(String name, List<String> methods) {
+        method = new MethodWriter(classWriter);
+        maxLocals = 2;
+
+        for (String callee : methods) {
+            method.loadLocal(GLOBALS);
+            method.loadLocal(CONSTANTS);
+            method.invokeStatic(CLASS_NAME, callee, RUN_DESCRIPTOR, -2);
+        }
+        method.op(RETURN, 0);
+        addMethod(name);
+    }
+
+    private void addMethod(String name) {
+        classWriter.addMethod(ClassWriter.ACC_PUBLIC | ClassWriter.ACC_STATIC, name, RUN_DESCRIPTOR,
+                method.code(), method.maxStack(), maxLocals);
+    }
+
+    private void compile(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    // compile an expression that leaves its value, as an object, on the stack.
+    private void compile(Expr expr) {
+        expr.accept(this);
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        // a block without declarations is not a scope.
+        if (stmt.slots == 0) {
+            for (Stmt statement : stmt.statements) {
+                compile(statement);
+            }
+            return null;
+        }
+
+        scopes.add(nextLocal);
+        nextLocal += stmt.slots;
+        maxLocals = Math.max(maxLocals, nextLocal);
+
+        for (Stmt statement : stmt.statements) {
+            compile(statement);
+        }
+
+        // the next blocks can reuse the JVM locals of this one.
+        nextLocal = scopes.remove(scopes.size() - 1);
+        return null;
+    }
+
+    // a break is a plain jump to the end of its loop, the statements leave nothing on the stack.
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        method.jump(GOTO, loopEnds.get(loopEnds.size() - 1), 0);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        compile(stmt.expression);
+        method.op(POP, -1);
+        return null;
+    }
+
+    // functions run in the interpreter.
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        throw new Unsupported("class");
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        throw new Unsupported("function");
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        MethodWriter.Label elseBranch = new MethodWriter.Label();
+        MethodWriter.Label end = new MethodWriter.Label();
+
+        compileCondition(stmt.condition);
+        method.jump(IFEQ, elseBranch, -1);
+        compile(stmt.thenBranch);
+        method.jump(GOTO, end, 0);
+        method.mark(elseBranch);
+        if (stmt.elseBranch != null) compile(stmt.elseBranch);
+        method.mark(end);
+        return null;
+    }
+
+    // a lazy block is parsed when it runs, the program is run by the interpreter.
+    @Override
+    public Void visitLazyStmt(Stmt.Lazy stmt) {
+        throw new Unsupported("lazy block");
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        compile(stmt.expression);
+        method.invokeStatic(RUNTIME, "print", "(Ljava/lang/Object;)V", -1);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        throw new Unsupported("return");
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        if (stmt.initializer != null) {
+            compile(stmt.initializer);
+        } else {
+            method.op(ACONST_NULL, 1);
+        }
+
+        if (stmt.slot == -1) {
+            method.loadLocal(GLOBALS);
+            pushToken(stmt.name);
+            method.invokeStatic(RUNTIME, "defineGlobal",
+                    "(Ljava/lang/Object;Lenvironment/Environment;Lscanner/Token;)V", -3);
+        } else {
+            method.storeLocal(local(0, stmt.slot));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        MethodWriter.Label start = new MethodWriter.Label();
+        MethodWriter.Label end = new MethodWriter.Label();
+
+        method.mark(start);
+        compileCondition(stmt.condition);
+        method.jump(IFEQ, end, -1);
+        loopEnds.add(end);
+        compile(stmt.body);
+        loopEnds.remove(loopEnds.size() - 1);
+        method.jumpBack(start);
+        method.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        throw new Unsupported("call");
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        throw new Unsupported("property");
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        throw new Unsupported("property");
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        throw new Unsupported("super");
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        throw new Unsupported("this");
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        compile(expr.value);
+
+        if (expr.depth == -1) {
+            method.loadLocal(GLOBALS);
+            pushToken(expr.name);
+            method.invokeStatic(RUNTIME, "assignGlobal",
+                    "(Ljava/lang/Object;Lenvironment/Environment;Lscanner/Token;)Ljava/lang/Object;", -2);
+        } else {
+            method.op(DUP, 1);
+            method.storeLocal(local(expr.depth, expr.slot));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        switch (expr.operator.type()) {
+            case MINUS, STAR, SLASH -> {
+                compileNumber(expr);
+                boxNumber();
+                return null;
+            }
+            case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL, EQUAL_EQUAL, BANG_EQUAL -> {
+                compileCondition(expr);
+                boxBoolean();
+                return null;
+            }
+        }
+
+        // the '+' operator.
+        if (isNumeric(expr.left) && isNumeric(expr.right)) {
+            compileNumber(expr.left);
+            compileNumber(expr.right);
+            method.op(DADD, -2);
+            boxNumber();
+            return null;
+        }
+
+        compile(expr.left);
+        compile(expr.right);
+        pushToken(expr.operator);
+        method.invokeStatic(RUNTIME, "add",
+                "(Ljava/lang/Object;Ljava/lang/Object;Lscanner/Token;)Ljava/lang/Object;", -2);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null) {
+            method.op(ACONST_NULL, 1);
+        } else if (expr.value instanceof Boolean) {
+            method.pushInt((boolean) expr.value ? 1 : 0);
+            boxBoolean();
+        } else {
+            pushConstant(expr.value);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        MethodWriter.Label end = new MethodWriter.Label();
+
+        // the value of the left operand is kept when it decides the result.
+        compile(expr.left);
+        method.op(DUP, 1);
+        method.invokeStatic(INTERPRETER, "isTruthy", "(Ljava/lang/Object;)Z", 0);
+        method.jump(expr.operator.type() == TokenType.OR ? IFNE : IFEQ, end, -1);
+        method.op(POP, -1);
+        compile(expr.right);
+        method.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        if (expr.operator.type() == TokenType.MINUS) {
+            compileNumber(expr);
+            boxNumber();
+        } else {
+            compileCondition(expr);
+            boxBoolean();
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        if (expr.depth == -1) {
+            method.loadLocal(GLOBALS);
+            pushToken(expr.name);
+            method.invokeStatic(RUNTIME, "getGlobal",
+                    "(Lenvironment/Environment;Lscanner/Token;)Ljava/lang/Object;", -1);
+        } else {
+            method.loadLocal(local(expr.depth, expr.slot));
+        }
+        return null;
+    }
+
+    /*
+    * An expression is numeric when it always produces a number or fails with a runtime error
+    * (a number literal, a '-', '*' or '/' expression, or a negation).
+    * */
+    private static boolean isNumeric(Expr expr) {
+        if (expr instanceof Expr.Literal) return ((Expr.Literal) expr).value instanceof Double;
+        if (expr instanceof Expr.Grouping) return isNumeric(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary) return ((Expr.Unary) expr).operator.type() == TokenType.MINUS;
+        if (expr instanceof Expr.Binary) {
+            TokenType type = ((Expr.Binary) expr).operator.type();
+            return type == TokenType.MINUS || type == TokenType.STAR || type == TokenType.SLASH;
+        }
+        return false;
+    }
+
+    // compile a numeric expression that leaves a primitive double on the stack.
+    private void compileNumber(Expr expr) {
+        if (expr instanceof Expr.Literal) {
+            method.pushDouble((double) ((Expr.Literal) expr).value);
+            return;
+        }
+        if (expr instanceof Expr.Grouping) {
+            compileNumber(((Expr.Grouping) expr).expression);
+            return;
+        }
+
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary) expr;
+            if (isNumeric(unary.right)) {
+                compileNumber(unary.right);
+                method.op(DNEG, 0);
+            } else {
+                compile(unary.right);
+                pushToken(unary.operator);
+                method.invokeStatic(RUNTIME, "negate", "(Ljava/lang/Object;Lscanner/Token;)D", 0);
+            }
+            return;
+        }
+
+        Expr.Binary binary = (Expr.Binary) expr;
+        if (isNumeric(binary.left) && isNumeric(binary.right)) {
+            compileNumber(binary.left);
+            compileNumber(binary.right);
+            switch (binary.operator.type()) {
+                case MINUS -> method.op(DSUB, -2);
+                case STAR -> method.op(DMUL, -2);
+                default -> method.op(DDIV, -2);
+            }
+            return;
+        }
+
+        // both operands are evaluated before their types are checked, like the interpreter does.
+        compile(binary.left);
+        compile(binary.right);
+        pushToken(binary.operator);
+        String name = switch (binary.operator.type()) {
+            case MINUS -> "subtract";
+            case STAR -> "multiply";
+            default -> "divide";
+        };
+        method.invokeStatic(RUNTIME, name, "(Ljava/lang/Object;Ljava/lang/Object;Lscanner/Token;)D", -1);
+    }
+
+    // compile an expression whose truthiness is all we need, it leaves 0 or 1 on the stack.
+    private void compileCondition(Expr expr) {
+        if (expr instanceof Expr.Grouping) {
+            compileCondition(((Expr.Grouping) expr).expression);
+            return;
+        }
+
+        if (expr instanceof Expr.Literal) {
+            Object value = ((Expr.Literal) expr).value;
+            method.pushInt(value == null || Boolean.FALSE.equals(value) ? 0 : 1);
+            return;
+        }
+
+        if (expr instanceof Expr.Unary && ((Expr.Unary) expr).operator.type() == TokenType.BANG) {
+            compileCondition(((Expr.Unary) expr).right);
+            method.pushInt(1);
+            method.op(IXOR, -1);
+            return;
+        }
+
+        if (expr instanceof Expr.Logical) {
+            Expr.Logical logical = (Expr.Logical) expr;
+            boolean or = logical.operator.type() == TokenType.OR;
+            MethodWriter.Label shortCircuit = new MethodWriter.Label();
+            MethodWriter.Label end = new MethodWriter.Label();
+
+            compileCondition(logical.left);
+            method.jump(or ? IFNE : IFEQ, shortCircuit, -1);
+            compileCondition(logical.right);
+            method.jump(GOTO, end, 0);
+            method.mark(shortCircuit);
+            method.pushInt(or ? 1 : 0);
+            method.mark(end);
+            return;
+        }
+
+        if (expr instanceof Expr.Binary && compileComparison((Expr.Binary) expr)) return;
+
+        compile(expr);
+        method.invokeStatic(INTERPRETER, "isTruthy", "(Ljava/lang/Object;)Z", 0);
+    }
+
+    // compile a comparison or an equality into 0 or 1, it returns false for the other operators.
+    private boolean compileComparison(Expr.Binary binary) {
+        TokenType type = binary.operator.type();
+        boolean numbers = isNumeric(binary.left) && isNumeric(binary.right);
+
+        switch (type) {
+            case EQUAL_EQUAL, BANG_EQUAL -> {
+                if (numbers) {
+                    compileNumber(binary.left);
+                    compileNumber(binary.right);
+                    method.invokeStatic(INTERPRETER, "isEqual", "(DD)Z", -3);
+                } else {
+                    compile(binary.left);
+                    compile(binary.right);
+                    method.invokeStatic(INTERPRETER, "isEqual", "(Ljava/lang/Object;Ljava/lang/Object;)Z", -1);
+                }
+                if (type == TokenType.BANG_EQUAL) {
+                    method.pushInt(1);
+                    method.op(IXOR, -1);
+                }
+                return true;
+            }
+            case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL -> {}
+            default -> {
+                return false;
+            }
+        }
+
+        if (!numbers) {
+            compile(binary.left);
+            compile(binary.right);
+            pushToken(binary.operator);
+            String name = switch (type) {
+                case GREATER -> "greater";
+                case GREATER_EQUAL -> "greaterEqual";
+                case LESS -> "less";
+                default -> "lessEqual";
+            };
+            method.invokeStatic(RUNTIME, name, "(Ljava/lang/Object;Ljava/lang/Object;Lscanner/Token;)Z", -2);
+            return true;
+        }
+
+        // like javac: the comparison of two doubles is false when one of them is NaN.
+        compileNumber(binary.left);
+        compileNumber(binary.right);
+        MethodWriter.Label isFalse = new MethodWriter.Label();
+        MethodWriter.Label end = new MethodWriter.Label();
+        switch (type) {
+            case GREATER -> {
+                method.op(DCMPL, -3);
+                method.jump(IFLE, isFalse, -1);
+            }
+            case GREATER_EQUAL -> {
+                method.op(DCMPL, -3);
+                method.jump(IFLT, isFalse, -1);
+            }
+            case LESS -> {
+                method.op(DCMPG, -3);
+                method.jump(IFGE, isFalse, -1);
+            }
+            default -> {
+                method.op(DCMPG, -3);
+                method.jump(IFGT, isFalse, -1);
+            }
+        }
+        method.pushInt(1);
+        method.jump(GOTO, end, 0);
+        method.mark(isFalse);
+        method.pushInt(0);
+        method.mark(end);
+        return true;
+    }
+
+    // the JVM local of a resolved variable: the first local of its block plus its slot.
+    private int local(int depth, int slot) {
+        return scopes.get(scopes.size() - 1 - depth) + slot;
+    }
+
+    private void boxNumber() {
+        method.invokeStatic("java/lang/Double", "valueOf", "(D)Ljava/lang/Double;", -1);
+    }
+
+    private void boxBoolean() {
+        method.invokeStatic("java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", 0);
+    }
+
+    private void pushToken(Token token) {
+        pushConstant(token);
+        method.checkCast(TOKEN);
+    }
+
+    // load a value from the constants array.
+    private void pushConstant(Object value) {
+        Integer index = constantIndex.get(value);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            constantIndex.put(value, index);
+        }
+
+        method.loadLocal(CONSTANTS);
+        method.pushInt(index);
+        method.op(AALOAD, -1);
+    }
+}
@@ -0,0 +1,52 @@
+package jvm;
+
+import ast.Stmt;
+import environment.Environment;
+import evaluate.Interpreter;
+import evaluate.RuntimeError;
+import lox.Main;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+/*
+* an execution engine that compiles the resolved statements into a JVM class, loads it as a hidden class and runs it.
+* When the program can't be compiled, it's run by the tree-walking interpreter instead. Both share the same
+* global environment, so the REPL can go from one to the other.
+* */
+public class JvmInterpreter {
+    private final Interpreter fallback = new Interpreter();
+
+    public void interpret(List<Stmt> statements) {
+        MethodHandle run;
+        JvmCompiler.Program program;
+        try {
+            program = new JvmCompiler().compile(statements);
+            run = load(program.classFile());
+        } catch (JvmCompiler.Unsupported unsupported) {
+            fallback.interpret(statements);
+            return;
+        }
+
+        try {
+            run.invokeExact(fallback.globals(), program.constants());
+        } catch (RuntimeError re) {
+            Main.runtimeError(re);
+        } catch (Throwable throwable) {
+            throw new IllegalStateException("The compiled program failed.", throwable);
+        }
+    }
+
+    // each program is a new hidden class, it can be unloaded as soon as we don't use it anymore.
+    private static MethodHandle load(byte[] classFile) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            MethodType type = MethodType.methodType(void.class, Environment.class, Object[].class);
+            return lookup.findStatic(lookup.lookupClass(), "run", type);
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new IllegalStateException("Cannot load the compiled program.", e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package jvm;
+
+import environment.Environment;
+import evaluate.Interpreter;
+import evaluate.RuntimeError;
+import scanner.Token;
+
+/*
+* the operations the generated classes call when they can't do the work with a single JVM instruction.
+* They give the same results and raise the same runtime errors as the tree-walking interpreter. The truthiness and
+* the equality of values are called straight on the Interpreter.
+* */
+public final class LoxRuntime {
+    private LoxRuntime() {}
+
+    public static Object add(Object left, Object right, Token operator) {
+        if (left instanceof Double && right instanceof Double) return (double) left + (double) right;
+        if (left instanceof String && right instanceof String) return left + (String) right;
+        if (left instanceof String && right instanceof Double) return (String) left + right;
+        if (left instanceof Double && right instanceof String) return left + (String) right;
+        throw new RuntimeError(operator, "Operands must be two numbers or strings.");
+    }
+
+    public static double subtract(Object left, Object right, Token operator) {
+        checkNumberOperands(left, right, operator);
+        return (double) left - (double) right;
+    }
+
+    public static double multiply(Object left, Object right, Token operator) {
+        checkNumberOperands(left, right, operator);
+        return (double) left * (double) right;
+    }
+
+    public static double divide(Object left, Object right, Token operator) {
+        checkNumberOperands(left, right, operator);
+        return (double) left / (double) right;
+    }
+
+    public static boolean greater(Object left, Object right, Token operator) {
+        checkNumberOperands(left, right, operator);
+        return (double) left > (double) right;
+    }
+
+    public static boolean greaterEqual(Object left, Object right, Token operator) {
+        checkNumberOperands(left, right, operator);
+        return (double) left >= (double) right;
+    }
+
+    public static boolean less(Object left, Object right, Token operator) {
+        checkNumberOperands(left, right, operator);
+        return (double) left < (double) right;
+    }
+
+    public static boolean lessEqual(Object left, Object right, Token operator) {
+        checkNumberOperands(left, right, operator);
+        return (double) left <= (double) right;
+    }
+
+    public static double negate(Object right, Token operator) {
+        if (!(right instanceof Double)) throw new RuntimeError(operator, "Operand must be number.");
+        return -(double) right;
+    }
+
+    public static void print(Object value) {
+        System.out.println(Interpreter.stringify(value));
+    }
+
+    public static Object getGlobal(Environment globals, Token name) {
+        return globals.get(name);
+    }
+
+    public static void defineGlobal(Object value, Environment globals, Token name) {
+        globals.define(name, value);
+    }
+
+    // the assignment is an expression, so it gives back the value.
+    public static Object assignGlobal(Object value, Environment globals, Token name) {
+        globals.assign(name, value);
+        return value;
+    }
+
+    private static void checkNumberOperands(Object left, Object right, Token operator) {
+        if (left instanceof Double && right instanceof Double) return;
+        throw new RuntimeError(operator, "Operands must be numbers.");
+    }
+}
@@ -0,0 +1,174 @@
+package jvm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+* the code of one method being assembled. It keeps track of the depth of the operand stack, so the method gets
+* the right max_stack, and it patches the jumps once their label is placed.
+* */
+class MethodWriter {
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ALOAD = 0x19;
+    static final int AALOAD = 0x32;
+    static final int ASTORE = 0x3a;
+    static final int POP = 0x57;
+    static final int POP2 = 0x58;
+    static final int DUP = 0x59;
+    static final int DADD = 0x63;
+    static final int DSUB = 0x67;
+    static final int DMUL = 0x6b;
+    static final int DDIV = 0x6f;
+    static final int DNEG = 0x77;
+    static final int IXOR = 0x82;
+    static final int DCMPL = 0x97;
+    static final int DCMPG = 0x98;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int GOTO = 0xa7;
+    static final int RETURN = 0xb1;
+    static final int INVOKESTATIC = 0xb8;
+    static final int CHECKCAST = 0xc0;
+
+    // a position in the code, the jumps to it are patched when it's placed.
+    static class Label {
+        private int position = -1;
+        private int stack = -1;     // the depth of the stack when we jump here.
+        private final List<Integer> jumps = new ArrayList<>();
+    }
+
+    private final ClassWriter classWriter;
+    private byte[] code = new byte[256];
+    private int length = 0;
+    private int stack = 0;
+    private int maxStack = 0;
+
+    MethodWriter(ClassWriter classWriter) {
+        this.classWriter = classWriter;
+    }
+
+    // emit an instruction without operand, 'effect' is how much it changes the depth of the stack.
+    void op(int opcode, int effect) {
+        write(opcode);
+        adjustStack(effect);
+    }
+
+    void loadLocal(int index) {
+        checkLocal(index);
+        write(ALOAD);
+        write(index);
+        adjustStack(1);
+    }
+
+    void storeLocal(int index) {
+        checkLocal(index);
+        write(ASTORE);
+        write(index);
+        adjustStack(-1);
+    }
+
+    void pushInt(int value) {
+        if (value == 0 || value == 1) {
+            op(value == 0 ? ICONST_0 : ICONST_1, 1);
+        } else if (value <= Short.MAX_VALUE) {
+            write(SIPUSH);
+            writeShort(value);
+            adjustStack(1);
+        } else {
+            write(LDC_W);
+            writeShort(classWriter.integer(value));
+            adjustStack(1);
+        }
+    }
+
+    void pushDouble(double value) {
+        write(LDC2_W);
+        writeShort(classWriter.doubleConstant(value));
+        adjustStack(2);
+    }
+
+    void checkCast(String internalName) {
+        write(CHECKCAST);
+        writeShort(classWriter.classRef(internalName));
+    }
+
+    // call a static method, 'effect' is the size of its result minus the size of its arguments.
+    void invokeStatic(String owner, String name, String descriptor, int effect) {
+        write(INVOKESTATIC);
+        writeShort(classWriter.methodRef(owner, name, descriptor));
+        adjustStack(effect);
+    }
+
+    // emit a jump, 'effect' is how many slots the jump instruction pops.
+    void jump(int opcode, Label label, int effect) {
+        adjustStack(effect);
+        label.stack = stack;
+        label.jumps.add(length);
+        write(opcode);
+        writeShort(0);
+    }
+
+    // place a label at the current position. If we can jump here, the stack has the depth it had at the jump.
+    void mark(Label label) {
+        label.position = length;
+        if (label.stack != -1) stack = label.stack;
+
+        for (int jump : label.jumps) {
+            patch(jump, label.position - jump);
+        }
+    }
+
+    // a backward jump, the label has already been placed.
+    void jumpBack(Label label) {
+        int at = length;
+        write(GOTO);
+        writeShort(0);
+        patch(at, label.position - at);
+    }
+
+    byte[] code() {
+        return Arrays.copyOf(code, length);
+    }
+
+    int maxStack() {
+        return maxStack;
+    }
+
+    private void patch(int at, int offset) {
+        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+            throw new JvmCompiler.Unsupported("Jump too far.");
+        }
+        code[at + 1] = (byte) (offset >> 8);
+        code[at + 2] = (byte) offset;
+    }
+
+    // the local variable instructions we emit have a one byte operand.
+    private void checkLocal(int index) {
+        if (index > 0xff) throw new JvmCompiler.Unsupported("Too many local variables.");
+    }
+
+    private void adjustStack(int effect) {
+        stack += effect;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private void write(int b) {
+        if (length == code.length) code = Arrays.copyOf(code, length * 2);
+        code[length++] = (byte) b;
+    }
+
+    private void writeShort(int value) {
+        write(value >> 8);
+        write(value);
+    }
+}
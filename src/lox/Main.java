@@ -1,32 +1,104 @@
 package lox;
 
 import ast.Stmt;
+import cache.AstCache;
+import closure.ClosureInterpreter;
 import evaluate.Interpreter;
 import evaluate.RuntimeError;
+import flat.FlatInterpreter;
+import jvm.JvmInterpreter;
+import scanner.ByteScanner;
+import scanner.ParallelScanner;
 import scanner.Scanner;
 import scanner.Token;
+import scanner.TokenBuffer;
+import scanner.TokenPipe;
+import scanner.TokenSource;
 import scanner.TokenType;
+import parser.ParallelParser;
 import parser.Parser;
+import optimizer.ConstantFolder;
+import optimizer.HashConser;
+import resolver.Resolver;
+import vm.Chunk;
+import vm.Compiler;
+import vm.VM;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 public class Main {
     private static final Interpreter INTERPRETER = new Interpreter();
+    private static final VM VIRTUAL_MACHINE = new VM();
+    private static final ClosureInterpreter CLOSURE_INTERPRETER = new ClosureInterpreter();
+    private static final FlatInterpreter FLAT_INTERPRETER = new FlatInterpreter();
+    private static final JvmInterpreter JVM_INTERPRETER = new JvmInterpreter();
+
+    // the engines that can run a program, the tree-walking interpreter is the default one.
+    private enum Engine { INTERPRETER, VM, CLOSURE, JVM, FLAT }
+    private static Engine engine = Engine.INTERPRETER;
+    private static boolean parallelScan = false;    // scan a script file in chunks, on several threads.
+    private static boolean parallelParse = false;   // parse the top level statements of a script on several threads.
+    private static boolean lazy = false;    // parse the blocks of the interpreter when they first run.
+    private static boolean strict = false;  // report the syntax errors of the lazy blocks before running.
+    private static boolean cache = false;   // keep the ast of the scripts, to run them again without parsing them.
+    private static boolean hashCons = false;    // share the expressions that are written the same way.
+    private static boolean stream = false;  // run each top level statement of a script as soon as it's parsed.
+    private static boolean pipeline = false;    // scan a script file on another thread while it's parsed.
+    private static final Path CACHE_DIRECTORY =
+            Path.of(System.getProperty("jlox.cache", System.getProperty("user.home") + "/.cache/jlox"));
     private static boolean hadError = false;
     private static boolean hadRuntimeError = false;
 
     public static void main(String[] args) throws IOException {
+        // the flags select the execution engine: '--vm' for the bytecode virtual machine, '--closure'
+        // for the ast compiled into lambdas, '--jvm' for the ast compiled into a JVM class and '--flat' for the ast
+        // encoded into arrays.
+        // '--parallel-scan' scans a large script on several threads, and '--parallel-parse' parses it on several threads.
+        // '--lazy' parses the blocks when they first run (only with the interpreter), '--strict' still checks them first.
+        // '--cache' runs a script that didn't change from its cached ast (in -Djlox.cache, or ~/.cache/jlox).
+        // '--hash-cons' keeps a single node for the identical expressions without side effects.
+        // '--stream' runs each top level statement of a script as soon as it's parsed.
+        // '--pipeline' scans a script file on another thread while the tokens are parsed.
+        while (args.length > 0 && args[0].startsWith("--")) {
+            switch (args[0]) {
+                case "--vm" -> engine = Engine.VM;
+                case "--closure" -> engine = Engine.CLOSURE;
+                case "--jvm" -> engine = Engine.JVM;
+                case "--flat" -> engine = Engine.FLAT;
+                case "--parallel-scan" -> parallelScan = true;
+                case "--parallel-parse" -> parallelParse = true;
+                case "--lazy" -> lazy = true;
+                case "--strict" -> strict = true;
+                case "--cache" -> cache = true;
+                case "--hash-cons" -> hashCons = true;
+                case "--stream" -> stream = true;
+                case "--pipeline" -> pipeline = true;
+                default -> {
+                    System.err.println("Unknown option: " + args[0]);
+                    System.exit(64);
+                }
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
         // here we access the length of the command line arguments, and we branch on the
         // number of them.
         if (args.length > 1) {
             // if the number of command line argument are greater than one, it means that
             // the usage misused the usage of the jlox script. So notify him and we close.
-            System.err.println("Usage: jlox [script]");
+            System.err.println("Usage: jlox [--vm | --closure | --jvm | --flat] [--parallel-scan] [--parallel-parse] [--lazy [--strict]] [--cache] [--hash-cons] [--stream] [--pipeline] [script]");
             System.exit(64);
         } else if (args.length == 1) {
             // if we end up here it means the user wants to pass a jlox script file to the
@@ -42,15 +114,67 @@ public class Main {
     * this run function reads inputs from the source string and execute the interpreter.
     * */
     private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
+        run(new Scanner(source));
+    }
+
+    // the parser pulls the tokens from the scanner as it needs them, they are never all in memory.
+    private static void run(TokenSource scanner) {
+        run(new TokenBuffer(scanner));
+    }
 
+    private static void run(TokenBuffer tokens) {
+        run(parse(tokens));
+    }
+
+    private static List<Stmt> parse(TokenBuffer tokens) {
+        return parser(tokens).parse();
+    }
+
+    private static Parser parser(TokenBuffer tokens) {
         Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
+        if (isLazy()) parser.parseBlocksLazily(strict);
+        return parser;
+    }
 
+    private static boolean isLazy() {
+        return lazy && engine == Engine.INTERPRETER;
+    }
+
+    private static void run(List<Stmt> statements) {
         // stop if there is an error in the parsing.
         if (hadError) return;
 
+        // fold the constant expressions and remove the branches that never run.
+        statements = new ConstantFolder().fold(statements);
+
+        if (engine == Engine.VM) {
+            Chunk chunk = new Compiler().compile(statements);
+            // stop if the program doesn't fit the limits of the bytecode.
+            if (hadError) return;
+
+            VIRTUAL_MACHINE.interpret(chunk);
+            return;
+        }
+
+        // compute the scope depth and slot of the local variables.
+        new Resolver().resolve(statements);
+
+        // the identical expressions are shared once they are resolved, as their variables must be in the same scope.
+        if (hashCons) statements = new HashConser().share(statements);
+
+        if (engine == Engine.CLOSURE) {
+            CLOSURE_INTERPRETER.interpret(statements);
+            return;
+        }
+        if (engine == Engine.JVM) {
+            JVM_INTERPRETER.interpret(statements);
+            return;
+        }
+        if (engine == Engine.FLAT) {
+            FLAT_INTERPRETER.interpret(statements);
+            return;
+        }
+
         INTERPRETER.interpret(statements);
     }
 
@@ -58,15 +182,92 @@ public class Main {
     * we give a path to a file, so the interpreter reads the file content and execute it.
     * */
     private static void runFile(String path) throws IOException {
-        // read the content of the file as an array of bytes.
-        byte[] bytes = Files.readAllBytes(Path.of(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        Path file = Path.of(path);
+        if (stream) streamFile(file);
+        else run(cache && Files.size(file) <= Integer.MAX_VALUE ? parseCached(file) : parseFile(file));
 
         // if an error occurs.
         if (hadError) System.exit(65);
         if (hadRuntimeError) System.exit(70);
     }
 
+    private static List<Stmt> parseFile(Path file) throws IOException {
+        if (parallelScan || parallelParse) {
+            // the whole file is decoded, so the scanners and the parsers can work on their chunks at the same time.
+            String source = new String(Files.readAllBytes(file), Charset.defaultCharset());
+            List<Token> tokens = parallelScan ? ParallelScanner.scanTokens(source) : new Scanner(source).scanTokens();
+            if (parallelParse) return ParallelParser.parse(tokens, isLazy(), strict);
+
+            Iterator<Token> iterator = tokens.iterator();
+            return parse(new TokenBuffer(iterator::next));
+        }
+        if (!pipeline && Charset.defaultCharset().equals(StandardCharsets.UTF_8) && Files.size(file) <= Integer.MAX_VALUE) {
+            // a UTF-8 file is mapped in memory and scanned as bytes, without decoding it.
+            return parse(new TokenBuffer(ByteScanner.map(file)));
+        }
+
+        // the scanner reads the file through a small buffer, so a large script is never loaded in memory at once.
+        try (FileChannel channel = FileChannel.open(file)) {
+            return parse(new TokenBuffer(scanner(channel)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /*
+    * each top level statement runs as soon as it's parsed, the same way the REPL runs a line: the engines keep their
+    * globals from one statement to the next. The statements that already ran can be collected, and the output of a
+    * long script starts before the end of the file is parsed.
+    * Once a statement has a syntax error nothing runs anymore, but the rest of the file is still parsed to report
+    * its errors. A runtime error stops everything.
+    * */
+    private static void streamFile(Path file) throws IOException {
+        if (!pipeline && Charset.defaultCharset().equals(StandardCharsets.UTF_8) && Files.size(file) <= Integer.MAX_VALUE) {
+            stream(new TokenBuffer(ByteScanner.map(file)));
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            stream(new TokenBuffer(scanner(channel)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // with '--pipeline' the scanner runs on its own thread, ahead of the parser.
+    private static TokenSource scanner(FileChannel channel) {
+        if (pipeline) return TokenPipe.open(channel, Charset.defaultCharset());
+        return new Scanner(channel, Charset.defaultCharset());
+    }
+
+    private static void stream(TokenBuffer tokens) {
+        Parser parser = parser(tokens);
+        while (parser.hasNext() && !hadRuntimeError) {
+            Stmt statement = parser.next();
+            if (!hadError) run(Collections.singletonList(statement));
+        }
+    }
+
+    /*
+    * the file is mapped in memory to compute its hash. When the ast of the same source is in the cache, it's used
+    * as it is, otherwise the file is parsed and its ast is added to the cache (unless it has syntax errors).
+    * */
+    private static List<Stmt> parseCached(Path file) throws IOException {
+        ByteBuffer source;
+        try (FileChannel channel = FileChannel.open(file)) {
+            source = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        AstCache astCache = new AstCache(CACHE_DIRECTORY);
+        String key = AstCache.key(source, Charset.defaultCharset(), isLazy() ? (strict ? "strict" : "lazy") : "eager");
+        List<Stmt> statements = astCache.load(key);
+        if (statements != null) return statements;
+
+        statements = parseFile(file);
+        if (!hadError) astCache.store(key, statements);
+        return statements;
+    }
+
     /*
      * if we fire up jlox without given it any command line argument, it drops us inside
      * the REPL.
@@ -0,0 +1,243 @@
+package optimizer;
+
+import ast.Expr;
+import ast.Stmt;
+import scanner.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static evaluate.Interpreter.isEqual;
+import static evaluate.Interpreter.isTruthy;
+
+/*
+* the constant folder runs after the parser and rewrites the ast:
+*   - an operator whose operands are all literals is replaced by the literal of its result,
+*   - an 'and'/'or' whose left operand is a literal is replaced by the operand that decides the result,
+*   - an if with a literal condition is replaced by the branch that runs, a while(false) is removed.
+*
+* An operation that would fail at runtime (like `-"text"` or `1 + nil`) is left as it is, so the interpreter
+* still reports the error when it runs it.
+* */
+public class ConstantFolder implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+    // the result of an operation that can't be folded because it would raise a runtime error.
+    private static final Object NOT_CONSTANT = new Object();
+
+    public List<Stmt> fold(List<Stmt> statements) {
+        List<Stmt> folded = new ArrayList<>(statements.size());
+        for (Stmt statement : statements) {
+            Stmt result = statement.accept(this);
+            // a statement that never runs is removed.
+            if (result != null) folded.add(result);
+        }
+        return folded;
+    }
+
+    private Expr fold(Expr expr) {
+        return expr.accept(this);
+    }
+
+    // fold a statement that can't just be removed, like the body of a loop.
+    private Stmt foldRequired(Stmt stmt) {
+        Stmt result = stmt.accept(this);
+        return result != null ? result : new Stmt.Block(new ArrayList<>());
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Stmt.Block stmt) {
+        return new Stmt.Block(fold(stmt.statements));
+    }
+
+    @Override
+    public Stmt visitBreakStmt(Stmt.Break stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitClassStmt(Stmt.Class stmt) {
+        List<Stmt.Function> methods = new ArrayList<>(stmt.methods.size());
+        for (Stmt.Function method : stmt.methods) {
+            methods.add(new Stmt.Function(method.name, method.params, fold(method.body)));
+        }
+        return new Stmt.Class(stmt.name, stmt.superclass, methods);
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+        return new Stmt.Expression(fold(stmt.expression));
+    }
+
+    @Override
+    public Stmt visitFunctionStmt(Stmt.Function stmt) {
+        return new Stmt.Function(stmt.name, stmt.params, fold(stmt.body));
+    }
+
+    @Override
+    public Stmt visitIfStmt(Stmt.If stmt) {
+        Expr condition = fold(stmt.condition);
+
+        if (condition instanceof Expr.Literal) {
+            if (isTruthy(((Expr.Literal) condition).value)) return stmt.thenBranch.accept(this);
+            return stmt.elseBranch != null ? stmt.elseBranch.accept(this) : null;
+        }
+
+        Stmt thenBranch = foldRequired(stmt.thenBranch);
+        Stmt elseBranch = stmt.elseBranch != null ? foldRequired(stmt.elseBranch) : null;
+        return new Stmt.If(condition, thenBranch, elseBranch);
+    }
+
+    // a lazy block is folded when it's parsed.
+    @Override
+    public Stmt visitLazyStmt(Stmt.Lazy stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Stmt.Print stmt) {
+        return new Stmt.Print(fold(stmt.expression));
+    }
+
+    @Override
+    public Stmt visitReturnStmt(Stmt.Return stmt) {
+        return new Stmt.Return(stmt.keyword, stmt.value != null ? fold(stmt.value) : null);
+    }
+
+    @Override
+    public Stmt visitVarStmt(Stmt.Var stmt) {
+        Expr initializer = stmt.initializer != null ? fold(stmt.initializer) : null;
+        return new Stmt.Var(stmt.name, initializer);
+    }
+
+    @Override
+    public Stmt visitWhileStmt(Stmt.While stmt) {
+        Expr condition = fold(stmt.condition);
+
+        // the body of a while(false) never runs.
+        if (condition instanceof Expr.Literal && !isTruthy(((Expr.Literal) condition).value)) return null;
+
+        return new Stmt.While(condition, foldRequired(stmt.body));
+    }
+
+    @Override
+    public Expr visitAssignExpr(Expr.Assign expr) {
+        return new Expr.Assign(expr.name, fold(expr.value));
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        Expr left = fold(expr.left);
+        Expr right = fold(expr.right);
+
+        if (left instanceof Expr.Literal && right instanceof Expr.Literal) {
+            Object value = binary(expr.operator.type(), ((Expr.Literal) left).value, ((Expr.Literal) right).value);
+            if (value != NOT_CONSTANT) return new Expr.Literal(value);
+        }
+
+        return new Expr.Binary(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitCallExpr(Expr.Call expr) {
+        List<Expr> arguments = new ArrayList<>(expr.arguments.size());
+        for (Expr argument : expr.arguments) {
+            arguments.add(fold(argument));
+        }
+        return new Expr.Call(fold(expr.callee), expr.paren, arguments);
+    }
+
+    @Override
+    public Expr visitGetExpr(Expr.Get expr) {
+        return new Expr.Get(fold(expr.object), expr.name);
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        Expr expression = fold(expr.expression);
+        if (expression instanceof Expr.Literal) return expression;
+        return new Expr.Grouping(expression);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitLogicalExpr(Expr.Logical expr) {
+        Expr left = fold(expr.left);
+        Expr right = fold(expr.right);
+
+        // the left operand decides: it's the result, or the result is the right operand.
+        if (left instanceof Expr.Literal) {
+            boolean truthy = isTruthy(((Expr.Literal) left).value);
+            if (expr.operator.type() == TokenType.OR) return truthy ? left : right;
+            return truthy ? right : left;
+        }
+
+        return new Expr.Logical(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitSetExpr(Expr.Set expr) {
+        return new Expr.Set(fold(expr.object), expr.name, fold(expr.value));
+    }
+
+    @Override
+    public Expr visitSuperExpr(Expr.Super expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitThisExpr(Expr.This expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr right = fold(expr.right);
+
+        if (right instanceof Expr.Literal) {
+            Object value = ((Expr.Literal) right).value;
+            if (expr.operator.type() == TokenType.BANG) return new Expr.Literal(!isTruthy(value));
+            if (value instanceof Double) return new Expr.Literal(-(double) value);
+        }
+
+        return new Expr.Unary(expr.operator, right);
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return expr;
+    }
+
+    // compute a binary operation like the interpreter does, or return NOT_CONSTANT where it would fail.
+    private static Object binary(TokenType operator, Object left, Object right) {
+        switch (operator) {
+            case EQUAL_EQUAL:
+                return isEqual(left, right);
+            case BANG_EQUAL:
+                return !isEqual(left, right);
+            case PLUS:
+                if (left instanceof Double && right instanceof Double) return (double) left + (double) right;
+                if (left instanceof String && right instanceof String) return left + (String) right;
+                if (left instanceof String && right instanceof Double) return (String) left + right;
+                if (left instanceof Double && right instanceof String) return left + (String) right;
+                return NOT_CONSTANT;
+        }
+
+        if (!(left instanceof Double && right instanceof Double)) return NOT_CONSTANT;
+        double a = (double) left;
+        double b = (double) right;
+
+        return switch (operator) {
+            case MINUS -> a - b;
+            case STAR -> a * b;
+            case SLASH -> a / b;
+            case GREATER -> a > b;
+            case GREATER_EQUAL -> a >= b;
+            case LESS -> a < b;
+            case LESS_EQUAL -> a <= b;
+            default -> NOT_CONSTANT;
+        };
+    }
+}
@@ -0,0 +1,239 @@
+package optimizer;
+
+import ast.Expr;
+import ast.Stmt;
+import scanner.Token;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+* the hash conser runs after the resolver and rewrites the ast so that the expressions that are written the same way
+* are a single node: every `1`, or every `x * 2 + y` of the same scope, is shared by all the places that use it.
+* A generated script that repeats the same expressions thousands of times then keeps only one copy of each.
+*
+* Only the expressions without side effects are shared (the literals, the variables and the operators on them),
+* an assignment, a call or a property access and the expressions around it are always kept apart: a property
+* access keeps the inline cache of its own site.
+* Two nodes are the same when their children are the same nodes, and their tokens have the same type, lexeme and
+* line, so a shared node still reports its runtime errors at the right line. A variable is also keyed on the
+* depth and slot the resolver gave it.
+* */
+public class HashConser implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+    // the key of a node: its class, its own data and its children, which are already shared nodes.
+    private record Key(Class<?> kind, Object a, Object b, Object c, Object d) {}
+
+    private record TokenKey(Object type, String lexeme, int line) {}
+
+    private final Map<Key, Expr> nodes = new HashMap<>();
+
+    public List<Stmt> share(List<Stmt> statements) {
+        List<Stmt> shared = new ArrayList<>(statements.size());
+        for (Stmt statement : statements) {
+            shared.add(share(statement));
+        }
+        return shared;
+    }
+
+    private Stmt share(Stmt stmt) {
+        return stmt != null ? stmt.accept(this) : null;
+    }
+
+    private Expr share(Expr expr) {
+        return expr.accept(this);
+    }
+
+    // return the node already seen with this key, or remember this one.
+    private Expr intern(Key key, Expr expr) {
+        Expr shared = nodes.putIfAbsent(key, expr);
+        return shared != null ? shared : expr;
+    }
+
+    // an expression can be shared only if it's the node kept for its key, which is never the case with an assignment.
+    private boolean isShared(Expr expr) {
+        return !(expr instanceof Expr.Assign || expr instanceof Expr.Call) && nodes.get(key(expr)) == expr;
+    }
+
+    private static TokenKey key(Token token) {
+        return new TokenKey(token.type(), token.lexeme(), token.line());
+    }
+
+    private static Key key(Expr expr) {
+        if (expr instanceof Expr.Literal literal) {
+            // the class is part of the key, so that 1 and "1" are different.
+            Object value = literal.value;
+            return new Key(Expr.Literal.class, value != null ? value.getClass() : null, value, null, null);
+        }
+        if (expr instanceof Expr.Variable variable) {
+            return new Key(Expr.Variable.class, key(variable.name), variable.depth, variable.slot, null);
+        }
+        if (expr instanceof Expr.Binary binary) {
+            return new Key(Expr.Binary.class, key(binary.operator), binary.left, binary.right, null);
+        }
+        if (expr instanceof Expr.Logical logical) {
+            return new Key(Expr.Logical.class, key(logical.operator), logical.left, logical.right, null);
+        }
+        if (expr instanceof Expr.Unary unary) {
+            return new Key(Expr.Unary.class, key(unary.operator), unary.right, null, null);
+        }
+        if (expr instanceof Expr.Grouping grouping) {
+            return new Key(Expr.Grouping.class, grouping.expression, null, null, null);
+        }
+        return null;
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Stmt.Block stmt) {
+        Stmt.Block block = new Stmt.Block(share(stmt.statements));
+        block.slots = stmt.slots;
+        block.countedLoop = stmt.countedLoop;
+        block.captured = stmt.captured;
+        return block;
+    }
+
+    @Override
+    public Stmt visitBreakStmt(Stmt.Break stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitClassStmt(Stmt.Class stmt) {
+        List<Stmt.Function> methods = new ArrayList<>(stmt.methods.size());
+        for (Stmt.Function method : stmt.methods) {
+            methods.add((Stmt.Function) visitFunctionStmt(method));
+        }
+        Stmt.Class klass = new Stmt.Class(stmt.name, stmt.superclass, methods);
+        klass.slot = stmt.slot;
+        return klass;
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+        return new Stmt.Expression(share(stmt.expression));
+    }
+
+    @Override
+    public Stmt visitFunctionStmt(Stmt.Function stmt) {
+        Stmt.Function function = new Stmt.Function(stmt.name, stmt.params, share(stmt.body));
+        function.slot = stmt.slot;
+        function.slots = stmt.slots;
+        function.captured = stmt.captured;
+        return function;
+    }
+
+    @Override
+    public Stmt visitIfStmt(Stmt.If stmt) {
+        return new Stmt.If(share(stmt.condition), share(stmt.thenBranch), share(stmt.elseBranch));
+    }
+
+    // a lazy block is resolved when it's parsed, after this pass.
+    @Override
+    public Stmt visitLazyStmt(Stmt.Lazy stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Stmt.Print stmt) {
+        return new Stmt.Print(share(stmt.expression));
+    }
+
+    @Override
+    public Stmt visitReturnStmt(Stmt.Return stmt) {
+        return new Stmt.Return(stmt.keyword, stmt.value != null ? share(stmt.value) : null);
+    }
+
+    @Override
+    public Stmt visitVarStmt(Stmt.Var stmt) {
+        Stmt.Var var = new Stmt.Var(stmt.name, stmt.initializer != null ? share(stmt.initializer) : null);
+        var.slot = stmt.slot;
+        return var;
+    }
+
+    @Override
+    public Stmt visitWhileStmt(Stmt.While stmt) {
+        return new Stmt.While(share(stmt.condition), share(stmt.body));
+    }
+
+    @Override
+    public Expr visitAssignExpr(Expr.Assign expr) {
+        Expr.Assign assign = new Expr.Assign(expr.name, share(expr.value));
+        assign.depth = expr.depth;
+        assign.slot = expr.slot;
+        return assign;
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        Expr left = share(expr.left);
+        Expr right = share(expr.right);
+        Expr.Binary binary = left == expr.left && right == expr.right ? expr : new Expr.Binary(left, expr.operator, right);
+        if (!isShared(left) || !isShared(right)) return binary;
+        return intern(key(binary), binary);
+    }
+
+    @Override
+    public Expr visitCallExpr(Expr.Call expr) {
+        List<Expr> arguments = new ArrayList<>(expr.arguments.size());
+        for (Expr argument : expr.arguments) {
+            arguments.add(share(argument));
+        }
+        return new Expr.Call(share(expr.callee), expr.paren, arguments);
+    }
+
+    @Override
+    public Expr visitGetExpr(Expr.Get expr) {
+        return new Expr.Get(share(expr.object), expr.name);
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        Expr expression = share(expr.expression);
+        Expr.Grouping grouping = expression == expr.expression ? expr : new Expr.Grouping(expression);
+        if (!isShared(expression)) return grouping;
+        return intern(key(grouping), grouping);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return intern(key(expr), expr);
+    }
+
+    @Override
+    public Expr visitLogicalExpr(Expr.Logical expr) {
+        Expr left = share(expr.left);
+        Expr right = share(expr.right);
+        Expr.Logical logical = left == expr.left && right == expr.right ? expr : new Expr.Logical(left, expr.operator, right);
+        if (!isShared(left) || !isShared(right)) return logical;
+        return intern(key(logical), logical);
+    }
+
+    @Override
+    public Expr visitSetExpr(Expr.Set expr) {
+        return new Expr.Set(share(expr.object), expr.name, share(expr.value));
+    }
+
+    @Override
+    public Expr visitSuperExpr(Expr.Super expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitThisExpr(Expr.This expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr right = share(expr.right);
+        Expr.Unary unary = right == expr.right ? expr : new Expr.Unary(expr.operator, right);
+        if (!isShared(right)) return unary;
+        return intern(key(unary), unary);
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return intern(key(expr), expr);
+    }
+}
@@ -0,0 +1,118 @@
+package parser;
+
+import ast.Stmt;
+import scanner.Token;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import static scanner.TokenType.*;
+
+/*
+* The parallel parser cuts the tokens of a script between top level statements and parses the parts at the same
+* time on the fork-join pool.
+*
+* A top level statement ends with a ';' or a '}' outside of any brace and parenthesis, unless an 'else' follows it.
+* Each part is parsed by its own parser, which counts its errors instead of reporting them, and the statements are
+* put back in order. When a part has a syntax error, the cuts can't be trusted anymore (a missing brace changes where
+* statements end), so the whole script is parsed again by the sequential parser, which reports the errors in order.
+* With lazy blocks, every part parser (and the sequential one) keeps its top level blocks lazy, see
+* Parser.parseBlocksLazily.
+* */
+public final class ParallelParser {
+    private static final int MIN_PART = 16 * 1024;  // the smallest number of tokens given to a parser.
+
+    private ParallelParser() {}
+
+    // the last token is eof.
+    public static List<Stmt> parse(List<Token> tokens, boolean lazy, boolean strict) {
+        int parallelism = ForkJoinPool.commonPool().getParallelism();
+        int partSize = Math.max(MIN_PART, tokens.size() / (parallelism * 4));
+
+        List<PartTask> tasks = new ArrayList<>();
+        int start = 0;
+        for (int end : split(tokens, partSize)) {
+            tasks.add(new PartTask(tokens, start, end, lazy, strict));
+            start = end;
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        List<Stmt> statements = new ArrayList<>();
+        for (PartTask task : tasks) {
+            List<Stmt> part = task.join();
+            if (task.errors > 0) return parser(tokens, lazy, strict).parse();
+            statements.addAll(part);
+        }
+        return statements;
+    }
+
+    private static Parser parser(List<Token> tokens, boolean lazy, boolean strict) {
+        Parser parser = new Parser(tokens);
+        if (lazy) parser.parseBlocksLazily(strict);
+        return parser;
+    }
+
+    // find where the parts end: after a top level statement, once the part has at least partSize tokens.
+    private static List<Integer> split(List<Token> tokens, int partSize) {
+        List<Integer> ends = new ArrayList<>();
+        int last = tokens.size() - 1;   // the eof token.
+        int braces = 0;
+        int parentheses = 0;
+        int start = 0;
+        for (int i = 0; i < last; i++) {
+            switch (tokens.get(i).type()) {
+                case LEFT_BRACE -> braces++;
+                case RIGHT_BRACE -> braces--;
+                case LEFT_PAREN -> parentheses++;
+                case RIGHT_PAREN -> parentheses--;
+                default -> {}
+            }
+
+            if (i + 1 - start < partSize || braces != 0 || parentheses != 0) continue;
+            switch (tokens.get(i).type()) {
+                case SEMICOLON, RIGHT_BRACE -> {
+                    if (tokens.get(i + 1).type() != ELSE) {
+                        ends.add(i + 1);
+                        start = i + 1;
+                    }
+                }
+                default -> {}
+            }
+        }
+        if (start < last) ends.add(last);
+        return ends;
+    }
+
+    private static final class PartTask extends RecursiveTask<List<Stmt>> {
+        private final List<Token> tokens;
+        private final int start;
+        private final int end;
+        private final boolean lazy;
+        private final boolean strict;
+        private int errors;
+
+        PartTask(List<Token> tokens, int start, int end, boolean lazy, boolean strict) {
+            this.tokens = tokens;
+            this.start = start;
+            this.end = end;
+            this.lazy = lazy;
+            this.strict = strict;
+        }
+
+        @Override
+        protected List<Stmt> compute() {
+            // the part ends with its own eof token, on the line of its last token.
+            List<Token> part = new ArrayList<>(end - start + 1);
+            part.addAll(tokens.subList(start, end));
+            part.add(new Token("", EOF, null, tokens.get(end - 1).line()));
+
+            Parser parser = parser(part, lazy, strict);
+            List<Stmt> statements = parser.parseQuietly();
+            errors = parser.errors();
+            return statements;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package parser;
 import ast.Expr;
 import ast.Stmt;
 import scanner.Token;
+import scanner.TokenBuffer;
+import scanner.TokenSource;
 import scanner.TokenType;
 import lox.Main;
 
@@ -13,11 +15,51 @@ import java.util.Arrays;
 import static scanner.TokenType.*;
 
 public class Parser {
-    private final List<Token> tokens;   // this is the list of tokens to parse. Also known as the 'letters' in the alphabet.
-    private int current = 0;    // the current position in the list of tokens. Also known as the 'current letter' in the alphabet.
+    private final TokenBuffer tokens;   // this is the window of tokens to parse. Also known as the 'letters' in the alphabet.
     private static class ParseError extends RuntimeException {}
+    private boolean quiet = false;  // the errors are counted instead of reported.
+    private int errors = 0;
+
+    // in lazy mode, the blocks outside any scope only keep their tokens, they are parsed when they first run.
+    private boolean lazy = false;
+    private boolean strict = false; // the lazy blocks are still checked for syntax errors before running.
+    private int scopes = 0; // the number of blocks and for loops around the statement being parsed.
+    private int loops = 0;  // the number of loops around the statement being parsed, a break needs one.
+    private int functions = 0;  // the number of functions around the statement being parsed, a return needs one.
+    private int classes = 0;    // the number of classes around the expression being parsed, a this needs one.
+    private boolean subclass = false;   // the innermost class has a superclass, a super needs one.
+    private boolean initializer = false;    // the innermost function is an init method, it can't return a value.
+    private static final int MAX_ARGUMENTS = 255;
+
+    // how tight each binary operator binds, from 'or' to '*' and '/'. Other tokens are 0, they end an expression.
+    private static final int OR_PRECEDENCE = 1;
+    private static final int[] PRECEDENCE = new int[TokenType.values().length];
+
+    static {
+        PRECEDENCE[OR.ordinal()] = OR_PRECEDENCE;
+        PRECEDENCE[AND.ordinal()] = 2;
+        PRECEDENCE[BANG_EQUAL.ordinal()] = 3;
+        PRECEDENCE[EQUAL_EQUAL.ordinal()] = 3;
+        PRECEDENCE[GREATER.ordinal()] = 4;
+        PRECEDENCE[GREATER_EQUAL.ordinal()] = 4;
+        PRECEDENCE[LESS.ordinal()] = 4;
+        PRECEDENCE[LESS_EQUAL.ordinal()] = 4;
+        PRECEDENCE[MINUS.ordinal()] = 5;
+        PRECEDENCE[PLUS.ordinal()] = 5;
+        PRECEDENCE[SLASH.ordinal()] = 6;
+        PRECEDENCE[STAR.ordinal()] = 6;
+    }
 
     public Parser(List<Token> tokens) {
+        this(tokens.iterator()::next);
+    }
+
+    // the parser pulls the tokens when it needs them.
+    public Parser(TokenSource tokens) {
+        this(new TokenBuffer(tokens));
+    }
+
+    public Parser(TokenBuffer tokens) {
         this.tokens = tokens;
     }
 
@@ -30,8 +72,20 @@ public class Parser {
         return stmtList;
     }
 
+    // the top level statements can also be pulled one at a time, so they run while the rest of the script is parsed.
+    public boolean hasNext() {
+        return !isAtEnd();
+    }
+
+    // the next top level statement, or null if it has a syntax error.
+    public Stmt next() {
+        return declaration();
+    }
+
     private Stmt declaration() {
         try {
+            if (match(CLASS)) return classDeclaration();
+            if (match(FUN)) return function("function");
             if (match(VAR)) return varDeclaration();
 
             return statement();
@@ -41,8 +95,77 @@ public class Parser {
         }
     }
 
+    // a class declaration: its name, its superclass if any and its methods.
+    private Stmt classDeclaration() {
+        consume(IDENTIFIER, "Expect class name.");
+        Token name = previous();
+
+        Expr.Variable superclass = null;
+        if (match(LESS)) {
+            consume(IDENTIFIER, "Expect superclass name.");
+            Token superName = previous();
+            if (superName.lexeme().equals(name.lexeme())) error(superName, "A class can't inherit from itself.");
+            superclass = new Expr.Variable(superName);
+        }
+        consume(LEFT_BRACE, "Expect '{' before class body.");
+
+        List<Stmt.Function> methods = new ArrayList<>();
+        boolean enclosingSubclass = subclass;
+        subclass = superclass != null;
+        classes++;
+        try {
+            while (!check(RIGHT_BRACE) && !isAtEnd()) methods.add(function("method"));
+        } finally {
+            subclass = enclosingSubclass;
+            classes--;
+        }
+        consume(RIGHT_BRACE, "Expect '}' after class body.");
+        return new Stmt.Class(name, superclass, methods);
+    }
+
+    /*
+    * a function declaration (or a method of a class): its name, its parameters and its body. The loops around the
+    * declaration are not around its body, a break in the body must be in a loop of the function.
+    * */
+    private Stmt.Function function(String kind) {
+        consume(IDENTIFIER, "Expect " + kind + " name.");
+        Token name = previous();
+        consume(LEFT_PAREN, "Expect '(' after " + kind + " name.");
+        List<Token> params = new ArrayList<>();
+        if (!check(RIGHT_PAREN)) {
+            do {
+                if (params.size() >= MAX_ARGUMENTS) error(peek(), "Can't have more than 255 parameters.");
+                consume(IDENTIFIER, "Expect parameter name.");
+                Token param = previous();
+                // the parameters take the first slots of the frame of a call, in order.
+                for (Token other : params) {
+                    if (other.lexeme().equals(param.lexeme())) error(param, "Already a parameter with this name.");
+                }
+                params.add(param);
+            } while (match(COMMA));
+        }
+        consume(RIGHT_PAREN, "Expect ')' after parameters.");
+        consume(LEFT_BRACE, "Expect '{' before function body.");
+
+        List<Stmt> body;
+        int enclosingLoops = loops;
+        boolean enclosingInitializer = initializer;
+        loops = 0;
+        functions++;
+        initializer = kind.equals("method") && name.lexeme().equals("init");
+        try {
+            body = block();
+        } finally {
+            loops = enclosingLoops;
+            initializer = enclosingInitializer;
+            functions--;
+        }
+        return new Stmt.Function(name, params, body);
+    }
+
     private Stmt varDeclaration() {
-        Token name = consume(IDENTIFIER, "Expect variable name");
+        consume(IDENTIFIER, "Expect variable name");
+        Token name = previous();
 
         Expr initial = null;
         if (match(EQUAL)) {
@@ -59,11 +182,15 @@ public class Parser {
             return printStatement();
         }
         if (match(LEFT_BRACE)) {
+            // the body of a loop is never lazy, the parser of a lazy block wouldn't know its breaks are in a loop.
+            if (lazy && scopes == 0 && loops == 0) return lazyBlock();
             return new Stmt.Block(block());
         }
 
         if (match(BREAK)) return breakStatement();
 
+        if (match(RETURN)) return returnStatement();
+
         // matching an if statement.
         if (match(IF)) return ifStatement();
 
@@ -77,8 +204,24 @@ public class Parser {
     }
 
     private Stmt breakStatement() {
+        Token keyword = previous();
+        if (loops == 0) error(keyword, "Must be inside a loop to use 'break'.");
         consume(SEMICOLON, "Expect ';' after the break keyword.");
-        return null;
+        return new Stmt.Break(keyword);
+    }
+
+    private Stmt returnStatement() {
+        Token keyword = previous();
+        if (functions == 0) error(keyword, "Can't return from top-level code.");
+
+        Expr value = null;
+        if (!check(SEMICOLON)) {
+            // an initializer always returns its instance.
+            if (initializer) error(keyword, "Can't return a value from an initializer.");
+            value = expression();
+        }
+        consume(SEMICOLON, "Expect ';' after return value.");
+        return new Stmt.Return(keyword, value);
     }
 
     private Stmt forStatement() {
@@ -112,8 +255,16 @@ public class Parser {
         }
         consume(RIGHT_PAREN, "Expect ')' after the for clause.");
 
-        // parsing the body of the for loop.
-        Stmt body = statement();
+        // parsing the body of the for loop, it's inside the scope of the loop.
+        Stmt body;
+        scopes++;
+        loops++;
+        try {
+            body = statement();
+        } finally {
+            scopes--;
+            loops--;
+        }
 
         if (increment != null) {
             body = new Stmt.Block(
@@ -137,7 +288,13 @@ public class Parser {
         consume(LEFT_PAREN, "Expect a left parentheses after the while keyword.");
         Expr condition = expression();
         consume(RIGHT_PAREN, "Expected a right parentheses after the condition.");
-        Stmt body = statement();
+        Stmt body;
+        loops++;
+        try {
+            body = statement();
+        } finally {
+            loops--;
+        }
         return new Stmt.While(condition, body);
     }
 
@@ -158,14 +315,43 @@ public class Parser {
     private List<Stmt> block() {
         List<Stmt> statements = new ArrayList<>();
 
-        while (!check(RIGHT_BRACE) && !isAtEnd()) {
-            statements.add(declaration());
+        scopes++;
+        try {
+            while (!check(RIGHT_BRACE) && !isAtEnd()) {
+                statements.add(declaration());
+            }
+        } finally {
+            scopes--;
         }
 
         consume(RIGHT_BRACE, "Expect '}' after the block.");
         return statements;
     }
 
+    // keep the tokens of a block till its closing brace, the nested braces must be balanced.
+    private Stmt lazyBlock() {
+        List<Token> body = new ArrayList<>();
+        int depth = 1;
+        while (!isAtEnd()) {
+            if (check(LEFT_BRACE)) depth++;
+            if (check(RIGHT_BRACE) && --depth == 0) break;
+            body.add(peek());
+            advance();
+        }
+        body.add(new Token("", EOF, null, peek().line()));
+
+        // the body is checked before the closing brace, so a block without one still reports its own errors first.
+        if (strict) {
+            // a quiet parser (a part of a parallel parse) leaves the reports to the sequential parse.
+            Parser validator = new Parser(body);
+            validator.quiet = quiet;
+            validator.parse();
+            errors += validator.errors();
+        }
+        consume(RIGHT_BRACE, "Expect '}' after the block.");
+        return new Stmt.Lazy(body);
+    }
+
     // parse an expressionStatement node.
     private Stmt expressionStatement() {
         Expr value = expression();
@@ -187,17 +373,20 @@ public class Parser {
 
     private Expr assignment() {
         // first we parse the left side of the assignment expression.
-        // Expr expr = equality();
-        Expr expr = or();
+        Expr expr = binary(OR_PRECEDENCE);
 
         // we look to see if there is an equal sign.
         if (match(EQUAL)) {
-            Token equals = previous();  // we get the equal sign.
+            // we get the equal sign, only when the target is invalid and it's needed for the error.
+            Token equals = expr instanceof Expr.Variable || expr instanceof Expr.Get ? null : previous();
             Expr value = assignment();  // we parse the right hand side of the assignment.
 
             if (expr instanceof Expr.Variable) {
                 Token name = ((Expr.Variable) expr).name;
                 return new Expr.Assign(name, value);
+            } else if (expr instanceof Expr.Get) {
+                Expr.Get get = (Expr.Get) expr;
+                return new Expr.Set(get.object, get.name, value);
             }
 
             error(equals, "Invalid assignment target.");
@@ -206,114 +395,125 @@ public class Parser {
         return expr;
     }
 
-    // parse the or logical operator.
-    private Expr or() {
-        Expr expr = and();
-
-        while (match(OR)) {
-            Token previous = previous();
-            Expr right = and();
-            expr = new Expr.Logical(expr, previous, right);
-        }
-        return expr;
-    }
-
-    // parse the and logical operator.
-    private Expr and() {
-        Expr expr = equality();
-
-        while (match(AND)) {
-            Token previous = previous();
-            Expr right = equality();
-            expr = new Expr.Logical(expr, previous, right);
-        }
-        return expr;
-    }
-
-    // parse the equality rule.
-    private Expr equality() {
-        Expr expr = comparison();
-
-        while (match(BANG_EQUAL, EQUAL_EQUAL)) {
-            Token operator = previous();
-            Expr right = comparison();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
-    }
-
-    private Expr comparison() {
-        Expr expr = term();
-
-        while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
-            Token operator = previous();
-            Expr right = term();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
-    }
-
-    private Expr term() {
-        Expr expr = factor();
-
-        while (match(MINUS, PLUS)) {
-            Token operator = previous();
-            Expr right = factor();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
-    }
-
-    private Expr factor() {
+    /*
+    * parse the binary and logical operators with precedence climbing: an operand, then every operator that binds
+    * at least as tight as the given precedence. The right operand of an operator only takes the operators that
+    * bind tighter, so all the operators are left associative, like the rules or, and, equality, comparison, term
+    * and factor of the grammar.
+    * */
+    private Expr binary(int precedence) {
         Expr expr = unary();
 
-        while (match(SLASH, STAR)) {
+        for (;;) {
+            TokenType type = tokens.type();
+            int operatorPrecedence = PRECEDENCE[type.ordinal()];
+            if (operatorPrecedence < precedence) return expr;
+
+            advance();
             Token operator = previous();
-            Expr right = unary();
-            expr = new Expr.Binary(expr, operator, right);
+            Expr right = binary(operatorPrecedence + 1);
+            if (type == OR || type == AND) {
+                expr = new Expr.Logical(expr, operator, right);
+            } else {
+                expr = new Expr.Binary(expr, operator, right);
+            }
         }
-
-        return expr;
     }
 
     private Expr unary() {
-        if (match(BANG, MINUS)) {
+        TokenType type = tokens.type();
+        if (type == BANG || type == MINUS) {
+            advance();
             Token operator = previous();
             Expr right = unary();
             return new Expr.Unary(operator, right);
         }
 
-        return primary();
+        return call();
     }
 
-    private Expr primary() {
-        if (match(FALSE)) return new Expr.Literal(false);
-        if (match(TRUE)) return new Expr.Literal(true);
-        if (match(NIL)) return new Expr.Literal(null);
-
-        if (match(NUMBER, STRING)) {
-            return new Expr.Literal(previous().literal());
-        }
-
-        if (match(LEFT_PAREN)) {
-            Expr expr = expression();
-            consume(RIGHT_PAREN, "Expect ')' after expression.");
-            return new Expr.Grouping(expr);
+    // a primary expression followed by any number of calls and property accesses, like `f(1).g(2)`.
+    private Expr call() {
+        Expr expr = primary();
+        for (;;) {
+            if (match(LEFT_PAREN)) {
+                List<Expr> arguments = new ArrayList<>();
+                if (!check(RIGHT_PAREN)) {
+                    do {
+                        if (arguments.size() >= MAX_ARGUMENTS) error(peek(), "Can't have more than 255 arguments.");
+                        arguments.add(expression());
+                    } while (match(COMMA));
+                }
+                consume(RIGHT_PAREN, "Expect ')' after arguments.");
+                Token paren = previous();
+                expr = new Expr.Call(expr, paren, arguments);
+            } else if (match(DOT)) {
+                consume(IDENTIFIER, "Expect property name after '.'.");
+                Token name = previous();
+                expr = new Expr.Get(expr, name);
+            } else {
+                return expr;
+            }
         }
+    }
 
-        if (match(IDENTIFIER)) {
-            return new Expr.Variable(previous());
+    private Expr primary() {
+        switch (tokens.type()) {
+            case FALSE -> {
+                advance();
+                return new Expr.Literal(false);
+            }
+            case TRUE -> {
+                advance();
+                return new Expr.Literal(true);
+            }
+            case NIL -> {
+                advance();
+                return new Expr.Literal(null);
+            }
+            case NUMBER, STRING -> {
+                advance();
+                return new Expr.Literal(previous().literal());
+            }
+            case LEFT_PAREN -> {
+                advance();
+                Expr expr = expression();
+                consume(RIGHT_PAREN, "Expect ')' after expression.");
+                return new Expr.Grouping(expr);
+            }
+            case IDENTIFIER -> {
+                advance();
+                return new Expr.Variable(previous());
+            }
+            case THIS -> {
+                advance();
+                Token keyword = previous();
+                if (classes == 0) error(keyword, "Can't use 'this' outside of a class.");
+                return new Expr.This(keyword);
+            }
+            case SUPER -> {
+                advance();
+                Token keyword = previous();
+                if (classes == 0) {
+                    error(keyword, "Can't use 'super' outside of a class.");
+                } else if (!subclass) {
+                    error(keyword, "Can't use 'super' in a class with no superclass.");
+                }
+                consume(DOT, "Expect '.' after 'super'.");
+                consume(IDENTIFIER, "Expect superclass method name.");
+                Token method = previous();
+                return new Expr.Super(keyword, method);
+            }
         }
 
         throw error(peek(), "Expect expression.");
     }
 
-    private Token consume(TokenType tokenType, String s) {
+    // the consumed token is not created, the callers that keep it take it with previous().
+    private void consume(TokenType tokenType, String s) {
         if (check(tokenType)) {
-            return advance();
+            advance();
+            return;
         }
 
         throw error(peek(), s);
@@ -323,9 +523,9 @@ public class Parser {
         advance();
 
         while (!isAtEnd()) {
-            if (previous().type() == SEMICOLON) return;
+            if (tokens.previousType() == SEMICOLON) return;
 
-            switch (peek().type()) {
+            switch (tokens.type()) {
                 case CLASS, FUN, VAR, FOR, IF, WHILE, PRINT, RETURN -> {
                     return;
                 }
@@ -335,41 +535,62 @@ public class Parser {
     }
 
     private ParseError error(Token token, String msg) {
-        Main.error(token, msg);
+        errors++;
+        if (!quiet) Main.error(token, msg);
         return new ParseError();
     }
 
-    private boolean match(TokenType... types) {
-        for (TokenType type : types) {
-            if (check(type)) {
-                advance();
-                return true;
-            }
+    /*
+    * parse the blocks lazily: a block that is not inside another block (or a for loop) becomes a Lazy statement
+    * with the tokens between its braces. Such a block only sees global variables, so it can be resolved on its
+    * own when it's parsed.
+    * In strict mode the body of a lazy block is parsed once to report its syntax errors now, but its ast is
+    * dropped, so it's only kept (and folded and resolved) for the blocks that run.
+    * */
+    public void parseBlocksLazily(boolean strict) {
+        this.lazy = true;
+        this.strict = strict;
+    }
+
+    // parse without reporting the errors, for a parser that runs with others. The caller checks errors().
+    List<Stmt> parseQuietly() {
+        quiet = true;
+        return parse();
+    }
+
+    public int errors() {
+        return errors;
+    }
+
+    private boolean match(TokenType type) {
+        if (check(type)) {
+            advance();
+            return true;
         }
         return false;
     }
 
-    private Token advance() {
-        if (!isAtEnd()) current++;
-        return previous();
+    private void advance() {
+        tokens.advance();
     }
 
+    // the type of a token is checked without creating the token.
     private boolean check(TokenType type) {
         if (isAtEnd()) return false;
-        return peek().type() == type;
+        return tokens.type() == type;
     }
 
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens.previous();
     }
 
     private boolean isAtEnd() {
-        return peek().type() == EOF;
+        return tokens.type() == EOF;
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return tokens.current();
     }
 
 }
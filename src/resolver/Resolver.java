@@ -0,0 +1,294 @@
+package resolver;
+
+import ast.Expr;
+import ast.Stmt;
+import scanner.Token;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+* the resolver runs between the parser and the interpreter. For each local variable it computes how many
+* scopes we have to walk up to find its declaration (the depth) and its index in that scope (the slot),
+* so the interpreter reads locals from an array instead of looking them up by name.
+*
+* A variable that is not found in any block scope is a global, its depth stays -1 and it's looked up by name.
+* A block without declarations is not a scope (its slots is 0), so the engines don't create an environment for it.
+* A function is a scope: its parameters take the first slots, then come the variables of its body.
+* A method is a function whose slot 0 holds 'this', its parameters come after it. The methods of a subclass close
+* over one more scope that holds 'super'.
+*
+* The frames of blocks and calls go back to a pool when they end, unless a function declared inside them keeps
+* them alive as its closure: the resolver marks those blocks and functions as captured.
+* */
+public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    // the stack of block scopes, each one maps the name of a variable to its slot.
+    private final List<Map<String, Integer>> scopes = new ArrayList<>();
+    private final List<Stmt> owners = new ArrayList<>();   // the block, function or class that opened each scope.
+
+    public void resolve(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            resolve(statement);
+        }
+    }
+
+    private void resolve(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void resolve(Expr expr) {
+        expr.accept(this);
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        // a block that declares nothing doesn't open a scope, it runs in the environment around it.
+        if (!declares(stmt.statements)) {
+            resolve(stmt.statements);
+            stmt.slots = 0;
+            return null;
+        }
+
+        beginScope(stmt);
+        resolve(stmt.statements);
+        stmt.slots = endScope();
+        return null;
+    }
+
+    private static boolean declares(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            if (statement instanceof Stmt.Var || statement instanceof Stmt.Function
+                    || statement instanceof Stmt.Class) return true;
+        }
+        return false;
+    }
+
+    private void beginScope(Stmt owner) {
+        scopes.add(new HashMap<>());
+        owners.add(owner);
+    }
+
+    // close the innermost scope and return its number of slots.
+    private int endScope() {
+        owners.remove(owners.size() - 1);
+        return scopes.remove(scopes.size() - 1).size();
+    }
+
+    // declare a variable in the innermost scope and return its slot, -1 for a global.
+    private int declare(Token name) {
+        return declare(name.lexeme());
+    }
+
+    private int declare(String name) {
+        if (scopes.isEmpty()) return -1;
+
+        // declaring the same variable twice in a scope reuses its slot.
+        Map<String, Integer> scope = scopes.get(scopes.size() - 1);
+        Integer slot = scope.get(name);
+        if (slot == null) {
+            slot = scope.size();
+            scope.put(name, slot);
+        }
+        return slot;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        resolve(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.thenBranch);
+        if (stmt.elseBranch != null) resolve(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        stmt.slot = declare(stmt.name);
+
+        // the scope of 'super' is made once when the class is declared, it's never pooled.
+        if (stmt.superclass != null) {
+            resolve(stmt.superclass);
+            beginScope(stmt);
+            declare("super");
+        }
+        for (Stmt.Function method : stmt.methods) {
+            resolveFunction(method, true);
+        }
+        if (stmt.superclass != null) endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        // the name is declared before the body is resolved, so the function can call itself.
+        stmt.slot = declare(stmt.name);
+        resolveFunction(stmt, false);
+        return null;
+    }
+
+    private void resolveFunction(Stmt.Function stmt, boolean method) {
+        // the function keeps every frame around it as its closure.
+        for (Stmt owner : owners) {
+            if (owner instanceof Stmt.Block) ((Stmt.Block) owner).captured = true;
+            else if (owner instanceof Stmt.Function) ((Stmt.Function) owner).captured = true;
+        }
+
+        beginScope(stmt);
+        if (method) declare("this");
+        for (Token param : stmt.params) {
+            declare(param);
+        }
+        resolve(stmt.body);
+        stmt.slots = endScope();
+    }
+
+    // a lazy block is resolved when it's parsed, it's outside any scope.
+    @Override
+    public Void visitLazyStmt(Stmt.Lazy stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        resolve(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        // the initializer is resolved before the variable is declared, so `var a = a;` reads the outer 'a'.
+        if (stmt.initializer != null) resolve(stmt.initializer);
+
+        stmt.slot = declare(stmt.name);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.value != null) resolve(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        resolve(expr.value);
+
+        int scope = findScope(expr.name.lexeme());
+        if (scope != -1) {
+            expr.depth = scopes.size() - 1 - scope;
+            expr.slot = scopes.get(scope).get(expr.name.lexeme());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        resolve(expr.left);
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        resolve(expr.callee);
+        for (Expr argument : expr.arguments) {
+            resolve(argument);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        resolve(expr.object);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        resolve(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        resolve(expr.left);
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        resolve(expr.object);
+        resolve(expr.value);
+        return null;
+    }
+
+    // the parser already checked that 'super' and 'this' are inside a method, so they are always locals.
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        int scope = findScope("super");
+        if (scope != -1) {
+            expr.depth = scopes.size() - 1 - scope;
+            expr.slot = scopes.get(scope).get("super");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        int scope = findScope("this");
+        if (scope != -1) {
+            expr.depth = scopes.size() - 1 - scope;
+            expr.slot = scopes.get(scope).get("this");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        int scope = findScope(expr.name.lexeme());
+        if (scope != -1) {
+            expr.depth = scopes.size() - 1 - scope;
+            expr.slot = scopes.get(scope).get(expr.name.lexeme());
+        }
+        return null;
+    }
+
+    // find the innermost scope that declares this variable, -1 means that the variable is a global.
+    private int findScope(String name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            if (scopes.get(i).containsKey(name)) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,282 @@
+package scanner;
+
+import lox.Main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static scanner.TokenType.*;
+
+/*
+* The byte scanner works on the bytes of a UTF-8 file mapped in memory, so the file is never decoded nor copied as
+* a whole. Everything outside a string literal is ASCII in Lox, so the tokens are read byte by byte and only the
+* string literals are decoded as UTF-8. It produces the same tokens and errors as the Scanner.
+*
+* A token is only an offset and a length in the file until someone needs its text: the scanner fills a TokenBuffer
+* with these numbers, and the Token object is created when the parser asks for it.
+* */
+public class ByteScanner implements TokenSource {
+    private final ByteBuffer source;    // the bytes of the source code.
+    private final int length;
+    private byte[] lexeme = new byte[64];   // the bytes of the token being turned into a string.
+    private int current = 0;    // the current position in the source code;
+    private int start = 0;  // the start position of each token.
+    private int line = 1;   // the line in the source file.
+    private TokenType type; // the type of the last token scanned.
+    private int tokenLine;  // the line of the last token scanned.
+
+    public ByteScanner(ByteBuffer source) {
+        this.source = source;
+        this.length = source.limit();
+    }
+
+    // map the file in memory, the mapping stays valid after the channel is closed.
+    public static ByteScanner map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return new ByteScanner(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /*
+    * this function scans the source code till it finds the next token, and returns eof at the end of the file.
+    * */
+    @Override
+    public Token next() {
+        scan();
+        return token(type, start, current - start, tokenLine);
+    }
+
+    // scan tokens into the buffer, till it's full or the eof token is in it.
+    void fill(TokenBuffer buffer) {
+        while (!buffer.isFull()) {
+            scan();
+            buffer.add(type, start, current - start, tokenLine);
+            if (type == EOF) return;
+        }
+    }
+
+    private void scan() {
+        type = null;
+        while (type == null) {
+            if (isAtEnd()) {
+                start = current;
+                addToken(EOF);
+                return;
+            }
+            start = current;
+            scanToken();
+        }
+    }
+
+    // create the token found at the given position of the file.
+    Token token(TokenType type, int start, int length, int line) {
+        int end = start + length;
+        return switch (type) {
+            case STRING -> new Token(utf8(start, end), STRING, utf8(start + 1, end - 1), line);
+            case NUMBER -> {
+                String text = ascii(start, end);
+                yield new Token(text, NUMBER, Double.parseDouble(text), line);
+            }
+            default -> {
+                String keyword = Keywords.lexeme(type);
+                yield new Token(keyword != null ? keyword : ascii(start, end), type, null, line);
+            }
+        };
+    }
+
+    private void scanToken() {
+        byte c = advance();
+
+        switch (c) {
+            case '(': addToken(LEFT_PAREN); break;
+            case ')': addToken(RIGHT_PAREN); break;
+            case '{': addToken(LEFT_BRACE); break;
+            case '}': addToken(RIGHT_BRACE); break;
+            case ',': addToken(COMMA); break;
+            case '.': addToken(DOT); break;
+            case '-': addToken(MINUS); break;
+            case '+': addToken(PLUS); break;
+            case ';': addToken(SEMICOLON); break;
+            case '*': addToken(STAR); break;
+
+            case '!':
+                addToken(match('=') ? BANG_EQUAL : BANG);
+                break;
+            case '=':
+                addToken(match('=') ? EQUAL_EQUAL : EQUAL);
+                break;
+            case '<':
+                addToken(match('=') ? LESS_EQUAL : LESS);
+                break;
+            case '>':
+                addToken(match('=') ? GREATER_EQUAL  : GREATER);
+                break;
+            case '/':
+                if (match('/')) {
+                    while (peek() != '\n' && !isAtEnd()) advance();
+                } else if (match('*')) {
+                    comment();
+                } else {
+                    addToken(SLASH);
+                }
+                break;
+
+            case '\t':
+            case ' ':
+            case '\r':
+                break;
+            case '\n':
+                line++;
+                break;
+
+            case '"':
+                string();
+                break;
+
+            default:
+                if (isDigit(c)) {
+                    number();
+                } else if (isAlpha(c)) {
+                    identifier();
+                } else if (c >= 0) {
+                    Main.error(line, "Unexpected character");
+                } else {
+                    // the bytes outside of ASCII are decoded like the char scanner decodes them, and there is one
+                    // error per UTF-16 unit: two for a 4 byte sequence (a surrogate pair), one for each malformed byte
+                    // (a replacement character).
+                    while (!isAtEnd() && peek() < 0) advance();
+                    int units = utf8(start, current).length();
+                    for (int i = 0; i < units; i++) {
+                        Main.error(line, "Unexpected character");
+                    }
+                }
+                break;
+        }
+    }
+
+    private void comment() {
+        int nesting = 1;
+        while (nesting > 0 && !isAtEnd()) {
+            byte c = peek();
+            byte next = peekNext();
+            if (c == '/' && next == '*') {
+                advance();
+                advance();
+                nesting++;
+            } else if (c == '*' && next == '/') {
+                advance();
+                advance();
+                nesting--;
+            } else {
+                if (c == '\n') line++;
+                advance();
+            }
+        }
+        if (nesting > 0) {
+            Main.error(line, "Unterminated comment.");
+        }
+    }
+
+    private void identifier() {
+        while (isAlphaNumber(peek())) advance();
+
+        TokenType tokenType = Keywords.of(source, start, current - start);
+
+        if (tokenType == null) tokenType = IDENTIFIER;
+        addToken(tokenType);
+    }
+
+    private void number() {
+        while (isDigit(peek())) advance();
+
+        if (peek() == '.' && isDigit(peekNext())) {
+            do advance();
+            while (isDigit(peek()));
+        }
+
+        addToken(NUMBER);
+    }
+
+    // a string literal is the only token that can hold other characters than ASCII.
+    private void string() {
+        while (peek() != '"' && !isAtEnd()) {
+            if (peek() == '\n') line++;
+            advance();
+        }
+
+        if (isAtEnd()) {
+            Main.error(line, "Unterminated string.");
+            return;
+        }
+
+        advance();
+
+        addToken(STRING);
+    }
+
+    private static boolean isAlpha(byte c) {
+        return c >= 'a' && c <= 'z' ||
+                c >= 'A' && c <= 'Z' ||
+                c == '_';
+    }
+
+    private static boolean isAlphaNumber(byte c) {
+        return isAlpha(c) || isDigit(c);
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // the bytes after the first one of a UTF-8 character look like 10xxxxxx.
+    private byte peek() {
+        if (isAtEnd()) return '\0';
+        return source.get(current);
+    }
+
+    private byte peekNext() {
+        if (current + 1 >= length) return '\0';
+        return source.get(current + 1);
+    }
+
+    private boolean match(char c) {
+        if (isAtEnd()) return false;
+        if (source.get(current) != c) return false;
+
+        current++;
+        return true;
+    }
+
+    // the token is between start and current, its text and literal are only read when the token is created.
+    private void addToken(TokenType tokenType) {
+        type = tokenType;
+        tokenLine = line;
+    }
+
+    // the text of an ASCII token, each byte is a character.
+    private String ascii(int from, int to) {
+        return new String(bytes(from, to), 0, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    private String utf8(int from, int to) {
+        return new String(bytes(from, to), 0, to - from, StandardCharsets.UTF_8);
+    }
+
+    private byte[] bytes(int from, int to) {
+        int size = to - from;
+        if (size > lexeme.length) lexeme = new byte[Math.max(size, lexeme.length * 2)];
+        source.get(from, lexeme, 0, size);
+        return lexeme;
+    }
+
+    private byte advance() {
+        return source.get(current++);
+    }
+
+    private boolean isAtEnd() {
+        return current >= length;
+    }
+}
@@ -0,0 +1,96 @@
+package scanner;
+
+import java.nio.ByteBuffer;
+
+import static scanner.TokenType.*;
+
+/*
+* The keyword recognizer picks the only keyword an identifier could be from its length and its first two
+* characters, then compares its text. It reads the text where the scanner found it, so an identifier is never
+* copied just to know if it's a keyword.
+* */
+final class Keywords {
+    private Keywords() {}
+
+    static TokenType of(char[] text, int start, int length) {
+        if (length < 2) return null;
+        TokenType type = candidate(length, text[start], text[start + 1]);
+        if (type == null) return null;
+
+        String keyword = lexeme(type);
+        for (int i = 1; i < length; i++) {
+            if (text[start + i] != keyword.charAt(i)) return null;
+        }
+        return type;
+    }
+
+    static TokenType of(ByteBuffer text, int start, int length) {
+        if (length < 2) return null;
+        TokenType type = candidate(length, (char) text.get(start), (char) text.get(start + 1));
+        if (type == null) return null;
+
+        String keyword = lexeme(type);
+        for (int i = 1; i < length; i++) {
+            if (text.get(start + i) != keyword.charAt(i)) return null;
+        }
+        return type;
+    }
+
+    // the text of a keyword, keyword tokens share it instead of copying it from the source. null for other tokens.
+    static String lexeme(TokenType type) {
+        return switch (type) {
+            case AND -> "and";
+            case BREAK -> "break";
+            case CLASS -> "class";
+            case ELSE -> "else";
+            case FALSE -> "false";
+            case FOR -> "for";
+            case FUN -> "fun";
+            case IF -> "if";
+            case NIL -> "nil";
+            case OR -> "or";
+            case PRINT -> "print";
+            case RETURN -> "return";
+            case SUPER -> "super";
+            case THIS -> "this";
+            case TRUE -> "true";
+            case VAR -> "var";
+            case WHILE -> "while";
+            default -> null;
+        };
+    }
+
+    private static TokenType candidate(int length, char first, char second) {
+        switch (length) {
+            case 2:
+                if (first == 'i') return second == 'f' ? IF : null;
+                if (first == 'o') return second == 'r' ? OR : null;
+                return null;
+            case 3:
+                switch (first) {
+                    case 'a': return AND;
+                    case 'f': return second == 'o' ? FOR : second == 'u' ? FUN : null;
+                    case 'n': return NIL;
+                    case 'v': return VAR;
+                }
+                return null;
+            case 4:
+                if (first == 'e') return ELSE;
+                if (first == 't') return second == 'h' ? THIS : second == 'r' ? TRUE : null;
+                return null;
+            case 5:
+                switch (first) {
+                    case 'b': return BREAK;
+                    case 'c': return CLASS;
+                    case 'f': return FALSE;
+                    case 'p': return PRINT;
+                    case 's': return SUPER;
+                    case 'w': return WHILE;
+                }
+                return null;
+            case 6:
+                return first == 'r' ? RETURN : null;
+        }
+        return null;
+    }
+}
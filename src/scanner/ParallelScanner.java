@@ -0,0 +1,130 @@
+package scanner;
+
+import lox.Main;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import static scanner.TokenType.EOF;
+
+/*
+* The parallel scanner cuts a large source code in chunks and scans them at the same time on the fork-join pool.
+*
+* A chunk must start where the sequential scanner would start a new token with nothing pending, so the source is
+* only cut after a newline that is outside a string and outside a block comment. Finding these places takes a
+* quick pass over the characters that follows strings and comments like the scanner does, and counts the lines
+* so each chunk knows its first line. The tokens of the chunks are put back together in order, and the errors are
+* reported in order once every chunk is scanned: the result is the same as the one of the sequential scanner.
+* */
+public final class ParallelScanner {
+    private static final int MIN_CHUNK = 64 * 1024;
+
+    private ParallelScanner() {}
+
+    public static List<Token> scanTokens(String source) {
+        int parallelism = ForkJoinPool.commonPool().getParallelism();
+        int chunkSize = Math.max(MIN_CHUNK, source.length() / (parallelism * 4));
+        List<int[]> chunks = split(source, chunkSize);
+
+        List<ChunkTask> tasks = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            int[] chunk = chunks.get(i);
+            int end = i + 1 < chunks.size() ? chunks.get(i + 1)[0] : source.length();
+            tasks.add(new ChunkTask(source.substring(chunk[0], end), chunk[1]));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        List<Token> tokens = new ArrayList<>();
+        Token eof = null;
+        for (ChunkTask task : tasks) {
+            List<Token> chunkTokens = task.join();
+            for (Scanner.ScanError error : task.errors) {
+                Main.error(error.line(), error.message());
+            }
+            // only the last chunk ends the source code.
+            eof = chunkTokens.remove(chunkTokens.size() - 1);
+            tokens.addAll(chunkTokens);
+        }
+        tokens.add(eof);
+        return tokens;
+    }
+
+    /*
+    * find where the chunks start, as {offset, line}. The first chunk starts at the beginning of the source, the
+    * others start at the first safe place after chunkSize characters.
+    * */
+    private static List<int[]> split(String source, int chunkSize) {
+        List<int[]> chunks = new ArrayList<>();
+        chunks.add(new int[] {0, 1});
+
+        int length = source.length();
+        int line = 1;
+        int next = chunkSize;   // the next chunk starts at the first safe place from here.
+        int i = 0;
+        while (i < length) {
+            char c = source.charAt(i++);
+            switch (c) {
+                case '\n' -> {
+                    line++;
+                    if (i >= next && i < length) {
+                        chunks.add(new int[] {i, line});
+                        next = i + chunkSize;
+                    }
+                }
+                case '"' -> {
+                    // a string ends at the next quote, it can hold newlines.
+                    while (i < length && source.charAt(i) != '"') {
+                        if (source.charAt(i) == '\n') line++;
+                        i++;
+                    }
+                    i++;
+                }
+                case '/' -> {
+                    if (i < length && source.charAt(i) == '/') {
+                        // the newline that ends a line comment is a safe place, the loop finds it.
+                        while (i < length && source.charAt(i) != '\n') i++;
+                    } else if (i < length && source.charAt(i) == '*') {
+                        i++;
+                        int nesting = 1;
+                        while (nesting > 0 && i < length) {
+                            char d = source.charAt(i);
+                            char e = i + 1 < length ? source.charAt(i + 1) : '\0';
+                            if (d == '/' && e == '*') {
+                                i += 2;
+                                nesting++;
+                            } else if (d == '*' && e == '/') {
+                                i += 2;
+                                nesting--;
+                            } else {
+                                if (d == '\n') line++;
+                                i++;
+                            }
+                        }
+                    }
+                }
+                default -> {}
+            }
+        }
+        return chunks;
+    }
+
+    private static final class ChunkTask extends RecursiveTask<List<Token>> {
+        private final String source;
+        private final int line;
+        private final List<Scanner.ScanError> errors = new ArrayList<>();
+
+        ChunkTask(String source, int line) {
+            this.source = source;
+            this.line = line;
+        }
+
+        @Override
+        protected List<Token> compute() {
+            return new Scanner(new StringReader(source), line, errors).scanTokens();
+        }
+    }
+}
@@ -2,60 +2,92 @@ package scanner;
 
 import lox.Main;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static scanner.TokenType.*;
 
-public class Scanner {
-    private final String source; // the source code of the user.
-    private final List<Token> tokens = new ArrayList<>();   // the list of all the tokens scanned.
-    private int current = 0;    // the current position in the source code;
-    private int start = 0;  // the start position of each token.
-    private int line = 1;   // the line in the source file.
-
-    private static final Map<String, TokenType> keywords;    // all the keywords inside our language.
-
-    static {
-        keywords = new HashMap<>();
-        keywords.put("and",    AND);
-        keywords.put("class",  CLASS);
-        keywords.put("else",   ELSE);
-        keywords.put("false",  FALSE);
-        keywords.put("for",    FOR);
-        keywords.put("fun",    FUN);
-        keywords.put("if",     IF);
-        keywords.put("nil",    NIL);
-        keywords.put("or",     OR);
-        keywords.put("print",  PRINT);
-        keywords.put("return", RETURN);
-        keywords.put("super",  SUPER);
-        keywords.put("this",   THIS);
-        keywords.put("true",   TRUE);
-        keywords.put("var",    VAR);
-        keywords.put("while",  WHILE);
-        keywords.put("break", BREAK);
-    }
+/*
+* The scanner reads the source code through a fixed-size buffer and produces the tokens one at a time, when the
+* parser asks for them. Only the characters of the token being scanned are kept in the buffer, so the memory
+* doesn't depend on the size of the script (the buffer only grows for a token longer than it, like a long string).
+* */
+public class Scanner implements TokenSource {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;    // the source code of the user.
+    private char[] buffer = new char[BUFFER_SIZE];  // the part of the source code being scanned.
+    private int limit = 0;  // the end of the characters read in the buffer.
+    private boolean exhausted = false;  // we read the whole source code.
+    private int current = 0;    // the current position in the buffer;
+    private int start = 0;  // the start position of each token in the buffer.
+    private int line;   // the line in the source file.
+    private Token token;    // the last token scanned.
+    private final List<ScanError> errors;   // the errors to report later, null to report them right away.
+
+    // an error found by a scanner that runs on another thread, it's reported later by the thread that uses the tokens.
+    record ScanError(int line, String message) {}
 
     public Scanner(String source) {
-        this.source = source;
+        this(new StringReader(source));
+    }
+
+    public Scanner(Reader reader) {
+        this(reader, 1, null);
+    }
+
+    // a scanner for a part of the source code that starts at the given line.
+    Scanner(Reader reader, int line, List<ScanError> errors) {
+        this.reader = reader;
+        this.line = line;
+        this.errors = errors;
+    }
+
+    // the bytes of the channel are decoded with the charset, malformed input is replaced like new String(bytes) does.
+    public Scanner(ReadableByteChannel channel, Charset charset) {
+        this(reader(channel, charset));
+    }
+
+    static Reader reader(ReadableByteChannel channel, Charset charset) {
+        return Channels.newReader(channel, charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), -1);
     }
 
     /*
-    * this function will loop through the source code, at each loop it scans a new token.
-    * when the scanning is finish we add a last eof token to simplify a bit the work of the
-    * parser.
+    * this function scans the whole source code and returns the list of all the tokens, the last one is eof.
     * */
     public List<Token> scanTokens() {
-        while (!isAtEnd()) {
+        List<Token> tokens = new ArrayList<>();
+        Token next;
+        do {
+            next = next();
+            tokens.add(next);
+        } while (next.type() != EOF);
+        return tokens;
+    }
+
+    /*
+    * this function scans the source code till it finds the next token. When the scanning is finish it returns an
+    * eof token to simplify a bit the work of the parser.
+    * */
+    @Override
+    public Token next() {
+        token = null;
+        while (token == null) {
+            if (isAtEnd()) return new Token("", EOF, null, line);
             start = current;
             scanToken();
         }
-
-        tokens.add(new Token("", EOF, null, line));
-        return tokens;
+        return token;
     }
 
     /*
@@ -91,7 +123,10 @@ public class Scanner {
             case '/':
                 if (match('/')) {
                     // this is for comments in JLox.
-                    while (peek() != '\n' && !isAtEnd()) advance();
+                    while (peek() != '\n' && !isAtEnd()) {
+                        advance();
+                        start = current;    // a comment is not kept in the buffer.
+                    }
                 } else if (match('*')) {
                     comment();
                 } else {
@@ -121,7 +156,7 @@ public class Scanner {
                 } else if (isAlpha(c)) {
                     identifier();
                 } else {
-                    Main.error(line, "Unexpected character");
+                    error("Unexpected character");
                 }
                 break;
         }
@@ -147,22 +182,25 @@ public class Scanner {
                 if (c == '\n') line++;
                 advance();
             }
+            start = current;    // a comment is not kept in the buffer.
         }
         // if the nesting number is greater than 0 then it means we missed a nested level.
         if (nesting > 0) {
-            Main.error(line, "Unterminated comment.");
+            error("Unterminated comment.");
         }
     }
 
     private void identifier() {
         while (isAlphaNumber(peek())) advance();
 
-        // here we look to see if the chunk of code is register as a keyword.
-        String text = source.substring(start, current);
-        TokenType tokenType = keywords.get(text);
+        // here we look to see if the chunk of code is a keyword, without copying it.
+        TokenType tokenType = Keywords.of(buffer, start, current - start);
+        if (tokenType != null) {
+            token = new Token(Keywords.lexeme(tokenType), tokenType, null, line);
+            return;
+        }
 
-        if (tokenType == null) tokenType = IDENTIFIER;
-        addToken(tokenType);
+        addToken(IDENTIFIER);
     }
 
     // function to checks if a character is an alphabetical symbol.
@@ -186,14 +224,16 @@ public class Scanner {
             while (isDigit(peek()));
         }
 
-        double number = Double.parseDouble(source.substring(start, current));
+        double number = Double.parseDouble(text(start, current));
         addToken(NUMBER, number);
     }
 
     // this function reads the next character in the source file.
     private char peekNext() {
-        if (current + 1 >= source.length()) return '\0';
-        return source.charAt(current + 1);
+        while (current + 1 >= limit) {
+            if (!fill()) return '\0';
+        }
+        return buffer[current + 1];
     }
 
     // this function checks to see if we encountered a number.
@@ -214,21 +254,21 @@ public class Scanner {
         }
 
         if (isAtEnd()) {
-            Main.error(line, "Unterminated string.");
+            error("Unterminated string.");
             return;
         }
 
         // consume the last '"' symbol.
         advance();
 
-        String text = source.substring(start + 1, current - 1);
+        String text = text(start + 1, current - 1);
         addToken(STRING, text);
     }
 
     // this function reads the current character inside the source code.
     private char peek() {
         if (isAtEnd()) return '\0';
-        return source.charAt(current);
+        return buffer[current];
     }
 
     /*
@@ -236,31 +276,79 @@ public class Scanner {
     * */
     private boolean match(char c) {
         if (isAtEnd()) return false;
-        if (source.charAt(current) != c) return false;
+        if (buffer[current] != c) return false;
 
         current++;
         return true;
     }
 
-    // create and add a new token in the list of tokens.
+    private void error(String message) {
+        if (errors != null) {
+            errors.add(new ScanError(line, message));
+        } else {
+            Main.error(line, message);
+        }
+    }
+
+    // create the token that was just scanned.
     private void addToken(TokenType tokenType) {
         addToken(tokenType, null);
     }
 
     private void addToken(TokenType tokenType, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(text, tokenType, literal, line));
+        token = new Token(text(start, current), tokenType, literal, line);
     }
 
-    // we read the next character in the source code.
+    // we read the next character in the source code, the caller already checked that it's in the buffer.
     private char advance() {
-        return source.charAt(current++);
+        return buffer[current++];
+    }
+
+    private String text(int from, int to) {
+        return new String(buffer, from, to - from);
     }
 
     /*
      * this function will check to see if we are at the end of the source file.
      * */
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= limit && !fill();
+    }
+
+    /*
+    * this function reads more of the source code in the buffer, it returns false at the end of the source code.
+    * The characters before the token being scanned are not needed anymore, so they are dropped to make room.
+    * */
+    private boolean fill() {
+        if (exhausted) return false;
+
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, limit - start);
+            current -= start;
+            limit -= start;
+            start = 0;
+        }
+        // the token doesn't fit in the buffer.
+        if (limit == buffer.length) {
+            char[] larger = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, limit);
+            buffer = larger;
+        }
+
+        try {
+            int read;
+            do {
+                read = reader.read(buffer, limit, buffer.length - limit);
+            } while (read == 0);
+
+            if (read < 0) {
+                exhausted = true;
+                return false;
+            }
+            limit += read;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
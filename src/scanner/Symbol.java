@@ -0,0 +1,42 @@
+package scanner;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+* A symbol is the canonical instance of an identifier. The scanner interns every identifier in the symbol table,
+* so two tokens with the same name share the same symbol, and the name is compared with its id instead of
+* hashing the string. The ids start at 0 and are dense, so they can index an array.
+* */
+public final class Symbol {
+    private static final ConcurrentHashMap<String, Symbol> table = new ConcurrentHashMap<>();
+    private static final AtomicInteger count = new AtomicInteger();
+
+    private final String name;
+    private final int id;
+
+    private Symbol(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    // the table can be used by several scanners at the same time.
+    public static Symbol intern(String name) {
+        Symbol symbol = table.get(name);
+        if (symbol != null) return symbol;
+        return table.computeIfAbsent(name, key -> new Symbol(key, count.getAndIncrement()));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -5,9 +5,12 @@ public class Token {
     private final TokenType tokenType;
     private final Object literal;
     private final int tokenLine;
+    private final Symbol symbol;    // the interned name of an identifier, null for the other tokens.
 
     public Token(String lexeme, TokenType tokenType, Object literal, int tokenLine) {
-        this.lexeme = lexeme;
+        this.symbol = tokenType == TokenType.IDENTIFIER ? Symbol.intern(lexeme) : null;
+        // all the tokens of an identifier share the same string.
+        this.lexeme = symbol != null ? symbol.name() : lexeme;
         this.tokenType = tokenType;
         this.literal = literal;
         this.tokenLine = tokenLine;
@@ -15,6 +18,10 @@ public class Token {
 
     public String lexeme() { return lexeme; }
 
+    public Symbol symbol() {
+        return symbol;
+    }
+
     public TokenType type() {
         return tokenType;
     }
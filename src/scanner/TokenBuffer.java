@@ -0,0 +1,122 @@
+package scanner;
+
+import java.util.Arrays;
+
+import static scanner.TokenType.EOF;
+
+/*
+* The token buffer is the window of tokens the parser reads. The tokens are stored as parallel arrays of ints
+* (type, offset, length and line), so the parser checks the type of a token without touching an object.
+*
+* A Token object is only created for the tokens the parser keeps in the ast, like names and operators, and it's
+* cached in a side table. Tokens that come from a TokenSource are objects already and go straight to that table.
+* When the parser reaches the end of the window, the buffer is refilled from the start, so the memory doesn't
+* depend on the size of the script. Only the previous token is kept from one window to the next.
+* */
+public final class TokenBuffer {
+    private static final int CAPACITY = 1024;
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final int[] types = new int[CAPACITY];
+    private final int[] starts = new int[CAPACITY];
+    private final int[] lengths = new int[CAPACITY];
+    private final int[] lines = new int[CAPACITY];
+    private final Token[] tokens = new Token[CAPACITY];   // the tokens already created.
+
+    private final ByteScanner scanner;  // one of the two is where the tokens come from.
+    private final TokenSource source;
+    private int count = 0;  // the number of tokens in the window.
+    private int current = 0;    // the index of the current token in the window.
+
+    public TokenBuffer(ByteScanner scanner) {
+        this.scanner = scanner;
+        this.source = null;
+        fill();
+    }
+
+    public TokenBuffer(TokenSource source) {
+        this.scanner = null;
+        this.source = source;
+        fill();
+    }
+
+    public TokenType type() {
+        return TYPES[types[current]];
+    }
+
+    public Token current() {
+        return token(current);
+    }
+
+    // the token before the current one, null at the beginning of the script.
+    public Token previous() {
+        return current == 0 ? null : token(current - 1);
+    }
+
+    // the type of the token before the current one, null at the beginning of the script.
+    public TokenType previousType() {
+        return current == 0 ? null : TYPES[types[current - 1]];
+    }
+
+    // move to the next token, the eof token is never passed.
+    public void advance() {
+        if (types[current] == EOF.ordinal()) return;
+
+        current++;
+        if (current == count) {
+            // the last token of this window becomes the previous token of the next one.
+            moveTo0(count - 1);
+            Arrays.fill(tokens, 1, count, null);
+            count = 1;
+            current = 1;
+            fill();
+        }
+    }
+
+    boolean isFull() {
+        return count == CAPACITY;
+    }
+
+    void add(TokenType type, int start, int length, int line) {
+        types[count] = type.ordinal();
+        starts[count] = start;
+        lengths[count] = length;
+        lines[count] = line;
+        count++;
+    }
+
+    private void add(Token token) {
+        tokens[count] = token;
+        add(token.type(), 0, 0, token.line());
+    }
+
+    private void fill() {
+        if (scanner != null) {
+            scanner.fill(this);
+            return;
+        }
+
+        while (!isFull()) {
+            Token token = source.next();
+            add(token);
+            if (token.type() == EOF) return;
+        }
+    }
+
+    private Token token(int index) {
+        Token token = tokens[index];
+        if (token == null) {
+            token = scanner.token(TYPES[types[index]], starts[index], lengths[index], lines[index]);
+            tokens[index] = token;
+        }
+        return token;
+    }
+
+    private void moveTo0(int index) {
+        types[0] = types[index];
+        starts[0] = starts[index];
+        lengths[0] = lengths[index];
+        lines[0] = lines[index];
+        tokens[0] = tokens[index];
+    }
+}
@@ -0,0 +1,123 @@
+package scanner;
+
+import lox.Main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+* The token pipe scans the source code on its own thread while the parser reads the tokens, so the scanning and the
+* parsing of a large script overlap.
+*
+* The scanner thread is the only one to write in the ring and the parser the only one to read from it: each side
+* moves its own position and only reads the position of the other one, so no lock is needed. When the ring is full
+* the scanner waits for the parser, when it's empty the parser waits for the scanner. A side that waits long (the
+* parser stops pulling tokens while a long statement runs with --stream) ends up parked, so it doesn't hold a core.
+*
+* The scan errors go through the ring with the tokens and are reported when the parser reaches them, so they are
+* reported in the same order as when the parser pulls the tokens from the scanner itself.
+* */
+public final class TokenPipe implements TokenSource {
+    private static final int CAPACITY = 4096;   // a power of two, a position is turned into an index with a mask.
+    private static final int MASK = CAPACITY - 1;
+    private static final int SPINS = 128;   // the number of busy waits before yielding.
+    private static final int YIELDS = 64;   // the number of yields before parking.
+    private static final long MAX_PARK_NANOS = 1_000_000;   // the parking time doubles up to this.
+
+    private final Object[] ring = new Object[CAPACITY];    // tokens, scan errors, or what the scanner threw.
+    private final AtomicLong head = new AtomicLong();  // the next position the parser reads.
+    private final AtomicLong tail = new AtomicLong();  // the next position the scanner writes.
+    private long cachedHead = 0;   // the last head the scanner read, only used by the scanner thread.
+    private long cachedTail = 0;   // the last tail the parser read, only used by the parser thread.
+
+    private TokenPipe() {}
+
+    // start scanning the channel on a new thread.
+    public static TokenPipe open(ReadableByteChannel channel, Charset charset) {
+        TokenPipe pipe = new TokenPipe();
+        Thread scanner = new Thread(() -> pipe.produce(channel, charset), "jlox-scanner");
+        // the parser may stop before the end of the script, the scanner must not keep the program alive.
+        scanner.setDaemon(true);
+        scanner.start();
+        return pipe;
+    }
+
+    private void produce(ReadableByteChannel channel, Charset charset) {
+        List<Scanner.ScanError> errors = new ArrayList<>();
+        try {
+            Scanner scanner = new Scanner(Scanner.reader(channel, charset), 1, errors);
+            Token token;
+            do {
+                token = scanner.next();
+                for (Scanner.ScanError error : errors) {
+                    publish(error);
+                }
+                errors.clear();
+                publish(token);
+            } while (token.type() != TokenType.EOF);
+        } catch (Throwable e) {
+            // an error too, or the parser would wait forever for the next token.
+            publish(e);
+        }
+    }
+
+    private void publish(Object item) {
+        long position = tail.get();
+        for (long spins = 0; position - cachedHead == CAPACITY; spins++) {
+            cachedHead = head.get();
+            if (position - cachedHead == CAPACITY) idle(spins);
+        }
+        ring[(int) position & MASK] = item;
+        // the item is written before the new tail can be seen by the parser.
+        tail.lazySet(position + 1);
+    }
+
+    @Override
+    public Token next() {
+        for (;;) {
+            Object item = take();
+            if (item instanceof Token) return (Token) item;
+            if (item instanceof Scanner.ScanError) {
+                Scanner.ScanError error = (Scanner.ScanError) item;
+                Main.error(error.line(), error.message());
+                continue;
+            }
+            // what the scanner threw is thrown again on the parser's thread, a checked exception is wrapped.
+            if (item instanceof RuntimeException) throw (RuntimeException) item;
+            if (item instanceof Error) throw (Error) item;
+            if (item instanceof IOException) throw new UncheckedIOException((IOException) item);
+            throw new IllegalStateException((Throwable) item);
+        }
+    }
+
+    private Object take() {
+        long position = head.get();
+        for (long spins = 0; position == cachedTail; spins++) {
+            cachedTail = tail.get();
+            if (position == cachedTail) idle(spins);
+        }
+        int index = (int) position & MASK;
+        Object item = ring[index];
+        ring[index] = null;
+        head.lazySet(position + 1);
+        return item;
+    }
+
+    // the other thread is usually a few tokens away, it's only given the processor when it takes longer.
+    private static void idle(long spins) {
+        if (spins < SPINS) {
+            Thread.onSpinWait();
+        } else if (spins < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            int parks = (int) Math.min(spins - SPINS - YIELDS, 10);
+            LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << parks));
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package scanner;
+
+/*
+* the parser pulls its tokens one at a time from a token source. The last token of a source is eof, and the
+* source keeps returning eof if it's asked for more.
+* */
+public interface TokenSource {
+    Token next();
+}
@@ -19,6 +19,21 @@ public class AstPrinter implements Expr.Visitor<String> {
         return parenthesize(expr.operator.lexeme(), expr.left, expr.right);
     }
 
+    @Override
+    public String visitCallExpr(Expr.Call expr) {
+        Expr[] exprs = new Expr[expr.arguments.size() + 1];
+        exprs[0] = expr.callee;
+        for (int i = 0; i < expr.arguments.size(); i++) {
+            exprs[i + 1] = expr.arguments.get(i);
+        }
+        return parenthesize("call", exprs);
+    }
+
+    @Override
+    public String visitGetExpr(Expr.Get expr) {
+        return parenthesize("." + expr.name.lexeme(), expr.object);
+    }
+
     @Override
     public String visitGroupingExpr(Expr.Grouping expr) {
         return parenthesize("grouping", expr.expression);
@@ -35,6 +50,21 @@ public class AstPrinter implements Expr.Visitor<String> {
         return "";
     }
 
+    @Override
+    public String visitSetExpr(Expr.Set expr) {
+        return parenthesize("=." + expr.name.lexeme(), expr.object, expr.value);
+    }
+
+    @Override
+    public String visitSuperExpr(Expr.Super expr) {
+        return "super." + expr.method.lexeme();
+    }
+
+    @Override
+    public String visitThisExpr(Expr.This expr) {
+        return "this";
+    }
+
     @Override
     public String visitUnaryExpr(Expr.Unary expr) {
         return parenthesize(expr.operator.lexeme(), expr.right);
@@ -0,0 +1,51 @@
+package tools;
+
+import ast.Stmt;
+import evaluate.Interpreter;
+import optimizer.ConstantFolder;
+import parser.Parser;
+import resolver.Resolver;
+import scanner.Scanner;
+
+import java.util.List;
+
+/*
+* measure the cost of a call in the interpreter with a recursive fib: almost all the work is calling, returning
+* and reading the argument. The program is parsed and resolved once, the first rounds warm up the JIT.
+*
+* usage: CallBenchmark [n] [rounds]
+* */
+public class CallBenchmark {
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 25;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        String source = """
+                fun fib(n) {
+                  if (n < 2) return n;
+                  return fib(n - 1) + fib(n - 2);
+                }
+                var result = fib(%d);
+                """.formatted(n);
+        List<Stmt> statements = new ConstantFolder().fold(new Parser(new Scanner(source).scanTokens()).parse());
+        new Resolver().resolve(statements);
+
+        // fib(n) makes 2 * fib(n + 1) - 1 calls.
+        long calls = 2 * fib(n + 1) - 1;
+
+        Interpreter interpreter = new Interpreter();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            interpreter.interpret(statements);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        System.out.printf("fib(%d): %d calls, best of %d rounds: %.2f ms, %.1f million calls/s%n",
+                n, calls, rounds, best / 1e6, calls * 1e3 / best);
+    }
+
+    private static long fib(int n) {
+        return n < 2 ? n : fib(n - 1) + fib(n - 2);
+    }
+}
@@ -21,21 +21,31 @@ public class GenerateAST {
 
         // description of subclasses.
         List<String> subclassesDescription = Arrays.asList(
-                "Assign         : Token name, Expr value",
-                "Binary         : Expr left, Token operator, Expr right",
+                "Assign         : Token name, Expr value | int depth = -1, int slot = -1",
+                "Binary         : Expr left, Token operator, Expr right | int specialization = 0",
+                "Call           : Expr callee, Token paren, List<Expr> arguments | Stmt.Function checked = null",
+                "Get            : Expr object, Token name | Object cache = null",
                 "Grouping       : Expr expression",
                 "Literal        : Object value",
                 "Logical        : Expr left, Token operator, Expr right",
-                "Unary          : Token operator, Expr right",
-                "Variable       : Token name"
+                "Set            : Expr object, Token name, Expr value | Object cache = null",
+                "Super          : Token keyword, Token method | int depth = -1, int slot = -1",
+                "This           : Token keyword | int depth = -1, int slot = -1",
+                "Unary          : Token operator, Expr right | int specialization = 0",
+                "Variable       : Token name | int depth = -1, int slot = -1"
         );
 
         defineAst(outputDirectory, "Stmt", Arrays.asList(
-                "Block          : List<Stmt> statements",
+                "Block          : List<Stmt> statements | int slots = 0, int countedLoop = 0, boolean captured = false",
+                "Break          : Token keyword",
+                "Class          : Token name, Expr.Variable superclass, List<Stmt.Function> methods | int slot = -1",
                 "Expression     : Expr expression",
+                "Function       : Token name, List<Token> params, List<Stmt> body | int slot = -1, int slots = 0, boolean captured = false",
                 "If             : Expr condition, Stmt thenBranch, Stmt elseBranch",
+                "Lazy           : List<Token> body | Block block = null",
                 "Print          : Expr expression",
-                "Var            : Token name, Expr initializer",
+                "Return         : Token keyword, Expr value",
+                "Var            : Token name, Expr initializer | int slot = -1",
                 "While          : Expr condition, Stmt body"
         ));
         defineAst(outputDirectory, "Expr", subclassesDescription);
@@ -85,9 +95,16 @@ public class GenerateAST {
         writer.println("    }");
     }
 
+    /*
+    * the fields before the '|' are final and set by the constructor, the ones after it are mutable
+    * with a default value, they are filled in by the passes that run after the parser (like the resolver).
+    * */
     private static void defineType(
             PrintWriter writer, String baseName,
-            String className, String fieldList) {
+            String className, String description) {
+        String fieldList = description.split("\\|")[0].trim();
+        String mutableFieldList = description.contains("|") ? description.split("\\|")[1].trim() : null;
+
         writer.printf("    public  static class %s extends %s {%n", className, baseName);
 
         // Constructor.
@@ -114,6 +131,11 @@ public class GenerateAST {
         for (String field : fields) {
             writer.printf("        public final %s;%n", field);
         }
+        if (mutableFieldList != null) {
+            for (String field : mutableFieldList.split(", ")) {
+                writer.printf("        public %s;%n", field);
+            }
+        }
 
         writer.println("    }");
     }
@@ -0,0 +1,74 @@
+package tools;
+
+import ast.Stmt;
+import parser.Parser;
+import scanner.Scanner;
+import scanner.Token;
+
+import java.util.List;
+import java.util.Random;
+
+/*
+* measure how fast the parser builds the ast of expression-heavy code. The tokens are scanned once, so only the
+* parser is timed, and the first rounds are run to warm up the JIT.
+*
+* usage: ParseBenchmark [statements] [rounds]
+* */
+public class ParseBenchmark {
+    private static final String[] OPERATORS = {"or", "and", "==", "!=", "<", "<=", ">", ">=", "+", "-", "*", "/"};
+    private static final String[] OPERANDS = {"1", "2.5", "\"text\"", "x", "y", "true", "nil"};
+
+    public static void main(String[] args) {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+
+        List<Token> tokens = new Scanner(source(statements, new Random(42))).scanTokens();
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            List<Stmt> ast = new Parser(tokens).parse();
+            long time = System.nanoTime() - start;
+            if (ast.size() != statements) throw new IllegalStateException("The benchmark source has errors.");
+            best = Math.min(best, time);
+        }
+
+        System.out.printf("%d tokens, best of %d rounds: %.2f ms, %.1f million tokens/s%n",
+                tokens.size(), rounds, best / 1e6, tokens.size() * 1e3 / best);
+    }
+
+    private static String source(int statements, Random random) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < statements; i++) {
+            source.append("x = ");
+            expression(source, 5, random);
+            source.append(";\n");
+        }
+        return source.toString();
+    }
+
+    private static void expression(StringBuilder source, int depth, Random random) {
+        if (depth == 0) {
+            source.append(OPERANDS[random.nextInt(OPERANDS.length)]);
+            return;
+        }
+
+        switch (random.nextInt(4)) {
+            case 0 -> {
+                source.append("-(");
+                expression(source, depth - 1, random);
+                source.append(")");
+            }
+            case 1 -> {
+                source.append("(");
+                expression(source, depth - 1, random);
+                source.append(")");
+            }
+            default -> {
+                expression(source, depth - 1, random);
+                source.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+                expression(source, depth - 1, random);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package tools;
+
+import ast.Stmt;
+import evaluate.Interpreter;
+import optimizer.ConstantFolder;
+import parser.Parser;
+import resolver.Resolver;
+import scanner.Scanner;
+
+import java.util.List;
+
+/*
+* measure property access in the interpreter: a loop that reads and sets fields and calls a method on instances of
+* `shapes` classes, one after the other. With 1 class every site is monomorphic, up to 4 they are polymorphic and
+* past that they are megamorphic and miss their inline cache. The loop is parsed and resolved once, the first
+* rounds warm up the JIT.
+*
+* usage: PropertyBenchmark [iterations] [shapes] [rounds]
+* */
+public class PropertyBenchmark {
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int shapes = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < shapes; i++) {
+            source.append("""
+                    class P%1$d {
+                      init(x) { this.x = x; this.y = 0; }
+                      step() { this.y = this.y + this.x; return this.y; }
+                    }
+                    """.formatted(i));
+        }
+        // the instances make a ring, the loop walks it so every site sees every shape.
+        source.append("var first = P0(1);\nvar p = first;\n");
+        for (int i = 1; i < shapes; i++) {
+            source.append("var q%1$d = P%1$d(%1$d + 1);\np.next = q%1$d;\np = q%1$d;\n".formatted(i));
+        }
+        source.append("p.next = first;\n");
+        String loop = """
+                var sum = 0;
+                for (var i = 0; i < %d; i = i + 1) {
+                  sum = sum + p.step() + p.x;
+                  p = p.next;
+                }
+                """.formatted(iterations);
+
+        // the classes are declared once, so the shapes the sites see stay the same from one round to the next.
+        Interpreter interpreter = new Interpreter();
+        interpreter.interpret(parse(source.toString()));
+        List<Stmt> statements = parse(loop);
+
+        // an iteration does 7 property accesses: 5 reads, 1 set and the lookup of the method it calls.
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            interpreter.interpret(statements);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        System.out.printf("%d iterations on %d shapes, best of %d rounds: %.2f ms, %.1f million accesses/s%n",
+                iterations, shapes, rounds, best / 1e6, iterations * 7e3 / best);
+    }
+
+    private static List<Stmt> parse(String source) {
+        List<Stmt> statements = new ConstantFolder().fold(new Parser(new Scanner(source).scanTokens()).parse());
+        new Resolver().resolve(statements);
+        return statements;
+    }
+}
@@ -0,0 +1,60 @@
+package vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+* a chunk is a sequence of bytecode with its constant pool and its line table.
+* the line table has one entry per byte of code, so the vm can find the line of any instruction that fails.
+* */
+public class Chunk {
+    private byte[] code = new byte[256];
+    private int[] lines = new int[256];
+    private int count = 0;
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+    private int maxStack = 0;  // the deepest the operand stack can grow while running this chunk.
+
+    public void write(int b, int line) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+        }
+        code[count] = (byte) b;
+        lines[count] = line;
+        count++;
+    }
+
+    // add a value to the constant pool and return its index. Equal values share the same entry.
+    public int addConstant(Object value) {
+        Integer index = constantIndex.get(value);
+        if (index != null) return index;
+
+        constants.add(value);
+        constantIndex.put(value, constants.size() - 1);
+        return constants.size() - 1;
+    }
+
+    // patch a two bytes operand that was written before its value was known (used by forward jumps).
+    void patch(int offset, int value) {
+        code[offset] = (byte) ((value >> 8) & 0xff);
+        code[offset + 1] = (byte) (value & 0xff);
+    }
+
+    void setMaxStack(int maxStack) {
+        this.maxStack = maxStack;
+    }
+
+    public byte[] code() { return code; }
+
+    public int count() { return count; }
+
+    public int line(int offset) { return lines[offset]; }
+
+    public Object[] constants() { return constants.toArray(); }
+
+    public int maxStack() { return maxStack; }
+}
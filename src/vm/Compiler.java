@@ -0,0 +1,412 @@
+package vm;
+
+import ast.Expr;
+import ast.Stmt;
+import lox.Main;
+import scanner.Token;
+import scanner.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static vm.OpCode.*;
+
+/*
+* the compiler walks the ast produced by the parser once and emits bytecode into a chunk.
+*
+* Top level variables are globals and are looked up by name, like the global environment of the interpreter.
+* Variables declared inside a block live on the operand stack of the vm, so they are resolved here to a stack slot.
+* */
+public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private static final int MAX_OPERAND = 0xffff;  // operands are encoded on two bytes.
+
+    // a local variable and the depth of the scope that declared it.
+    private record Local(String name, int depth) {}
+
+    // a loop being compiled: the scope depth around it, and the jumps of its breaks to patch at its end.
+    private record Loop(int depth, List<Integer> breaks) {}
+
+    private final Chunk chunk = new Chunk();
+    private final List<Local> locals = new ArrayList<>();
+    private final List<Loop> loops = new ArrayList<>();
+    private int scopeDepth = 0;
+    private int line = 0;   // the line of the last token we have seen, it goes in the line table.
+    private int stackDepth = 0;
+    private int maxStackDepth = 0;
+
+    public Chunk compile(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            compile(statement);
+        }
+        emit(RETURN);
+
+        chunk.setMaxStack(maxStackDepth);
+        return chunk;
+    }
+
+    private void compile(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void compile(Expr expr) {
+        expr.accept(this);
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        beginScope();
+        for (Stmt statement : stmt.statements) {
+            compile(statement);
+        }
+        endScope();
+        return null;
+    }
+
+    // a break pops the locals of the scopes it leaves and jumps after the end of the loop.
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        line = stmt.keyword.line();
+        Loop loop = loops.get(loops.size() - 1);
+
+        int popped = 0;
+        for (int i = locals.size() - 1; i >= 0 && locals.get(i).depth() > loop.depth(); i--) {
+            emit(POP);
+            popped++;
+        }
+        loop.breaks().add(emitJump(JUMP));
+        // the code after the break is still compiled with the locals on the stack.
+        stackDepth += popped;
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        compile(stmt.expression);
+        emit(POP);
+        return null;
+    }
+
+    // the vm has no call frames or objects yet, the programs with functions or classes run with the other engines.
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        Main.error(stmt.name, "Classes are not supported by the bytecode vm.");
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        Main.error(stmt.name, "Functions are not supported by the bytecode vm.");
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        compile(stmt.condition);
+
+        int thenJump = emitJump(JUMP_IF_FALSE);
+        emit(POP);
+        compile(stmt.thenBranch);
+
+        int elseJump = emitJump(JUMP);
+        patchJump(thenJump);
+        // the condition is still on the stack when we land here from the first jump.
+        stackDepth++;
+        emit(POP);
+        if (stmt.elseBranch != null) compile(stmt.elseBranch);
+        patchJump(elseJump);
+        return null;
+    }
+
+    // lazy blocks are only made for the tree-walking interpreter.
+    @Override
+    public Void visitLazyStmt(Stmt.Lazy stmt) {
+        throw new IllegalStateException("A lazy block can only run in the interpreter.");
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        compile(stmt.expression);
+        emit(PRINT);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        Main.error(stmt.keyword, "Functions are not supported by the bytecode vm.");
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        line = stmt.name.line();
+
+        // the initializer is compiled before the variable is declared, so `var a = a;` reads the outer 'a'
+        // like the interpreter does.
+        if (stmt.initializer != null) {
+            compile(stmt.initializer);
+        } else {
+            emit(NIL);
+        }
+
+        if (scopeDepth == 0) {
+            emitWithOperand(DEFINE_GLOBAL, nameConstant(stmt.name));
+            return null;
+        }
+
+        // a variable declared twice in the same scope overwrites the first one.
+        int slot = resolveLocal(stmt.name.lexeme());
+        if (slot != -1 && locals.get(slot).depth() == scopeDepth) {
+            emitWithOperand(SET_LOCAL, slot);
+            emit(POP);
+            return null;
+        }
+
+        if (locals.size() > MAX_OPERAND) {
+            Main.error(stmt.name, "Too many local variables in scope.");
+            return null;
+        }
+        // the value of the initializer stays on the stack, it is now the slot of the variable.
+        locals.add(new Local(stmt.name.lexeme(), scopeDepth));
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        int loopStart = chunk.count();
+        compile(stmt.condition);
+
+        int exitJump = emitJump(JUMP_IF_FALSE);
+        emit(POP);
+        Loop loop = new Loop(scopeDepth, new ArrayList<>());
+        loops.add(loop);
+        compile(stmt.body);
+        loops.remove(loops.size() - 1);
+        emitLoop(loopStart);
+
+        patchJump(exitJump);
+        stackDepth++;
+        emit(POP);
+        // the breaks land after the condition is popped, with the stack of the loop.
+        for (int jump : loop.breaks()) {
+            patchJump(jump);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        Main.error(expr.paren, "Functions are not supported by the bytecode vm.");
+        // the call still leaves a value on the stack, for the code around it.
+        emit(NIL);
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        Main.error(expr.name, "Classes are not supported by the bytecode vm.");
+        // the expression still leaves a value on the stack, for the code around it.
+        emit(NIL);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        Main.error(expr.name, "Classes are not supported by the bytecode vm.");
+        emit(NIL);
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        Main.error(expr.keyword, "Classes are not supported by the bytecode vm.");
+        emit(NIL);
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        Main.error(expr.keyword, "Classes are not supported by the bytecode vm.");
+        emit(NIL);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        compile(expr.value);
+        line = expr.name.line();
+
+        int slot = resolveLocal(expr.name.lexeme());
+        if (slot != -1) {
+            emitWithOperand(SET_LOCAL, slot);
+        } else {
+            emitWithOperand(SET_GLOBAL, nameConstant(expr.name));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        compile(expr.left);
+        compile(expr.right);
+        line = expr.operator.line();
+
+        switch (expr.operator.type()) {
+            case BANG_EQUAL -> emit(NOT_EQUAL);
+            case EQUAL_EQUAL -> emit(EQUAL);
+            case GREATER -> emit(GREATER);
+            case GREATER_EQUAL -> emit(GREATER_EQUAL);
+            case LESS -> emit(LESS);
+            case LESS_EQUAL -> emit(LESS_EQUAL);
+            case PLUS -> emit(ADD);
+            case MINUS -> emit(SUBTRACT);
+            case STAR -> emit(MULTIPLY);
+            case SLASH -> emit(DIVIDE);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null) {
+            emit(NIL);
+        } else if (expr.value instanceof Boolean) {
+            emit((boolean) expr.value ? TRUE : FALSE);
+        } else {
+            emitWithOperand(CONSTANT, makeConstant(expr.value));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        compile(expr.left);
+        line = expr.operator.line();
+
+        if (expr.operator.type() == TokenType.OR) {
+            // if the left operand is truthy we keep it and skip the right operand.
+            int elseJump = emitJump(JUMP_IF_FALSE);
+            int endJump = emitJump(JUMP);
+            patchJump(elseJump);
+            emit(POP);
+            compile(expr.right);
+            patchJump(endJump);
+        } else {
+            // if the left operand is falsey we keep it and skip the right operand.
+            int endJump = emitJump(JUMP_IF_FALSE);
+            emit(POP);
+            compile(expr.right);
+            patchJump(endJump);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        compile(expr.right);
+        line = expr.operator.line();
+
+        switch (expr.operator.type()) {
+            case MINUS -> emit(NEGATE);
+            case BANG -> emit(NOT);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        line = expr.name.line();
+
+        int slot = resolveLocal(expr.name.lexeme());
+        if (slot != -1) {
+            emitWithOperand(GET_LOCAL, slot);
+        } else {
+            emitWithOperand(GET_GLOBAL, nameConstant(expr.name));
+        }
+        return null;
+    }
+
+    private void beginScope() {
+        scopeDepth++;
+    }
+
+    // when a block ends, its local variables are popped from the stack.
+    private void endScope() {
+        scopeDepth--;
+
+        while (!locals.isEmpty() && locals.get(locals.size() - 1).depth() > scopeDepth) {
+            emit(POP);
+            locals.remove(locals.size() - 1);
+        }
+    }
+
+    // look for the innermost local variable with this name, -1 means that the variable is a global.
+    private int resolveLocal(String name) {
+        for (int i = locals.size() - 1; i >= 0; i--) {
+            if (locals.get(i).name().equals(name)) return i;
+        }
+        return -1;
+    }
+
+    private int nameConstant(Token name) {
+        return makeConstant(name.lexeme());
+    }
+
+    private int makeConstant(Object value) {
+        int index = chunk.addConstant(value);
+        if (index > MAX_OPERAND) {
+            Main.error(line, "Too many constants in one chunk.");
+            return 0;
+        }
+        return index;
+    }
+
+    private void emit(byte op) {
+        chunk.write(op, line);
+        trackStack(op);
+    }
+
+    private void emitWithOperand(byte op, int operand) {
+        emit(op);
+        chunk.write((operand >> 8) & 0xff, line);
+        chunk.write(operand & 0xff, line);
+    }
+
+    // emit a forward jump with a placeholder offset, and return the position of the offset to patch it later.
+    private int emitJump(byte op) {
+        emitWithOperand(op, 0xffff);
+        return chunk.count() - 2;
+    }
+
+    private void patchJump(int offset) {
+        int jump = chunk.count() - offset - 2;
+        if (jump > MAX_OPERAND) {
+            Main.error(line, "Too much code to jump over.");
+        }
+        chunk.patch(offset, jump);
+    }
+
+    private void emitLoop(int loopStart) {
+        int offset = chunk.count() - loopStart + 3;
+        if (offset > MAX_OPERAND) {
+            Main.error(line, "Loop body too large.");
+        }
+        emitWithOperand(LOOP, offset);
+    }
+
+    // keep track of how deep the operand stack can be, so the vm allocates it once with the right size.
+    private void trackStack(byte op) {
+        switch (op) {
+            case CONSTANT, NIL, TRUE, FALSE, GET_LOCAL, GET_GLOBAL -> stackDepth++;
+            case POP, DEFINE_GLOBAL, PRINT,
+                 EQUAL, NOT_EQUAL, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL,
+                 ADD, SUBTRACT, MULTIPLY, DIVIDE -> stackDepth--;
+        }
+        maxStackDepth = Math.max(maxStackDepth, stackDepth);
+    }
+}
@@ -0,0 +1,37 @@
+package vm;
+
+/*
+* the instruction set of the virtual machine. Each instruction is a single byte, some of them are followed
+* by a two bytes operand (an index in the constant pool, a local slot or a jump offset).
+* */
+public final class OpCode {
+    public static final byte CONSTANT = 0;          // [index] push a value from the constant pool.
+    public static final byte NIL = 1;
+    public static final byte TRUE = 2;
+    public static final byte FALSE = 3;
+    public static final byte POP = 4;
+    public static final byte GET_LOCAL = 5;         // [slot]
+    public static final byte SET_LOCAL = 6;         // [slot]
+    public static final byte GET_GLOBAL = 7;        // [name index]
+    public static final byte DEFINE_GLOBAL = 8;     // [name index]
+    public static final byte SET_GLOBAL = 9;        // [name index]
+    public static final byte EQUAL = 10;
+    public static final byte NOT_EQUAL = 11;
+    public static final byte GREATER = 12;
+    public static final byte GREATER_EQUAL = 13;
+    public static final byte LESS = 14;
+    public static final byte LESS_EQUAL = 15;
+    public static final byte ADD = 16;
+    public static final byte SUBTRACT = 17;
+    public static final byte MULTIPLY = 18;
+    public static final byte DIVIDE = 19;
+    public static final byte NOT = 20;
+    public static final byte NEGATE = 21;
+    public static final byte PRINT = 22;
+    public static final byte JUMP = 23;             // [offset] jump forward.
+    public static final byte JUMP_IF_FALSE = 24;    // [offset] jump forward if the top of the stack is falsey.
+    public static final byte LOOP = 25;             // [offset] jump backward.
+    public static final byte RETURN = 26;
+
+    private OpCode() {}
+}
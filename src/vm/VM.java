@@ -0,0 +1,178 @@
+package vm;
+
+import evaluate.Interpreter;
+import evaluate.RuntimeError;
+import lox.Main;
+import scanner.Token;
+import scanner.TokenType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static vm.OpCode.*;
+
+/*
+* a stack based virtual machine that runs the bytecode produced by the compiler.
+* It gives the same output and reports the same runtime errors as the tree-walking interpreter.
+* */
+public class VM {
+    private final Map<String, Object> globals = new HashMap<>();
+
+    public void interpret(Chunk chunk) {
+        try {
+            run(chunk);
+        } catch (RuntimeError re) {
+            Main.runtimeError(re);
+        }
+    }
+
+    private void run(Chunk chunk) {
+        final byte[] code = chunk.code();
+        final Object[] constants = chunk.constants();
+        final Object[] stack = new Object[chunk.maxStack()];
+        int sp = 0;     // the next free slot in the stack.
+        int ip = 0;     // the next instruction to execute.
+
+        for (;;) {
+            byte instruction = code[ip++];
+            switch (instruction) {
+                case CONSTANT -> {
+                    stack[sp++] = constants[readShort(code, ip)];
+                    ip += 2;
+                }
+                case NIL -> stack[sp++] = null;
+                case TRUE -> stack[sp++] = true;
+                case FALSE -> stack[sp++] = false;
+                case POP -> sp--;
+                case GET_LOCAL -> {
+                    stack[sp++] = stack[readShort(code, ip)];
+                    ip += 2;
+                }
+                case SET_LOCAL -> {
+                    // the assignment is an expression, so its value stays on the stack.
+                    stack[readShort(code, ip)] = stack[sp - 1];
+                    ip += 2;
+                }
+                case GET_GLOBAL -> {
+                    String name = (String) constants[readShort(code, ip)];
+                    Object value = globals.get(name);
+                    if (value == null && !globals.containsKey(name)) {
+                        throw undefinedVariable(chunk, ip - 1, name);
+                    }
+                    stack[sp++] = value;
+                    ip += 2;
+                }
+                case DEFINE_GLOBAL -> {
+                    globals.put((String) constants[readShort(code, ip)], stack[--sp]);
+                    ip += 2;
+                }
+                case SET_GLOBAL -> {
+                    String name = (String) constants[readShort(code, ip)];
+                    if (!globals.containsKey(name)) {
+                        throw undefinedVariable(chunk, ip - 1, name);
+                    }
+                    globals.put(name, stack[sp - 1]);
+                    ip += 2;
+                }
+                case EQUAL -> {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Interpreter.isEqual(stack[sp - 1], right);
+                }
+                case NOT_EQUAL -> {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = !Interpreter.isEqual(stack[sp - 1], right);
+                }
+                case GREATER -> {
+                    checkNumberOperands(chunk, ip - 1, stack[sp - 2], stack[sp - 1]);
+                    double right = (double) stack[--sp];
+                    stack[sp - 1] = (double) stack[sp - 1] > right;
+                }
+                case GREATER_EQUAL -> {
+                    checkNumberOperands(chunk, ip - 1, stack[sp - 2], stack[sp - 1]);
+                    double right = (double) stack[--sp];
+                    stack[sp - 1] = (double) stack[sp - 1] >= right;
+                }
+                case LESS -> {
+                    checkNumberOperands(chunk, ip - 1, stack[sp - 2], stack[sp - 1]);
+                    double right = (double) stack[--sp];
+                    stack[sp - 1] = (double) stack[sp - 1] < right;
+                }
+                case LESS_EQUAL -> {
+                    checkNumberOperands(chunk, ip - 1, stack[sp - 2], stack[sp - 1]);
+                    double right = (double) stack[--sp];
+                    stack[sp - 1] = (double) stack[sp - 1] <= right;
+                }
+                case ADD -> {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    stack[sp - 1] = add(chunk, ip - 1, left, right);
+                }
+                case SUBTRACT -> {
+                    checkNumberOperands(chunk, ip - 1, stack[sp - 2], stack[sp - 1]);
+                    double right = (double) stack[--sp];
+                    stack[sp - 1] = (double) stack[sp - 1] - right;
+                }
+                case MULTIPLY -> {
+                    checkNumberOperands(chunk, ip - 1, stack[sp - 2], stack[sp - 1]);
+                    double right = (double) stack[--sp];
+                    stack[sp - 1] = (double) stack[sp - 1] * right;
+                }
+                case DIVIDE -> {
+                    checkNumberOperands(chunk, ip - 1, stack[sp - 2], stack[sp - 1]);
+                    double right = (double) stack[--sp];
+                    stack[sp - 1] = (double) stack[sp - 1] / right;
+                }
+                case NOT -> stack[sp - 1] = !Interpreter.isTruthy(stack[sp - 1]);
+                case NEGATE -> {
+                    if (!(stack[sp - 1] instanceof Double)) {
+                        throw error(chunk, ip - 1, "Operand must be number.");
+                    }
+                    stack[sp - 1] = -(double) stack[sp - 1];
+                }
+                case PRINT -> System.out.println(Interpreter.stringify(stack[--sp]));
+                case JUMP -> ip += 2 + readShort(code, ip);
+                case JUMP_IF_FALSE -> {
+                    if (Interpreter.isTruthy(stack[sp - 1])) {
+                        ip += 2;
+                    } else {
+                        ip += 2 + readShort(code, ip);
+                    }
+                }
+                case LOOP -> ip -= readShort(code, ip) - 2;
+                case RETURN -> {
+                    return;
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + instruction + ".");
+            }
+        }
+    }
+
+    private static int readShort(byte[] code, int ip) {
+        return ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+    }
+
+    // the '+' operator adds numbers and concatenates strings, with a string and a number it concatenates too.
+    private static Object add(Chunk chunk, int ip, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) return (double) left + (double) right;
+        if (left instanceof String && right instanceof String) return left + (String) right;
+        if (left instanceof String && right instanceof Double) return (String) left + right;
+        if (left instanceof Double && right instanceof String) return left + (String) right;
+        throw error(chunk, ip, "Operands must be two numbers or strings.");
+    }
+
+    private static void checkNumberOperands(Chunk chunk, int ip, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) return;
+        throw error(chunk, ip, "Operands must be numbers.");
+    }
+
+    private static RuntimeError undefinedVariable(Chunk chunk, int ip, String name) {
+        Token token = new Token(name, TokenType.IDENTIFIER, null, chunk.line(ip));
+        return new RuntimeError(token, "undefined variable '" + name + "'.");
+    }
+
+    // the bytecode has no token, so we rebuild one with the line of the failing instruction.
+    private static RuntimeError error(Chunk chunk, int ip, String message) {
+        Token token = new Token("", TokenType.EOF, null, chunk.line(ip));
+        return new RuntimeError(token, message);
+    }
+}